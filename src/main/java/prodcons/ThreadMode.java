@@ -0,0 +1,101 @@
+package prodcons;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mode d'exécution des producteurs et consommateurs (clé threadMode de
+ * options.xml), commun à toutes les versions.
+ *
+ * Les Producer / Consumer de v1 à v7 héritent de Thread. En mode PLATFORM,
+ * chacun est démarré tel quel (un thread plateforme par participant). En
+ * mode VIRTUAL, le participant n'est pas démarré : sa méthode run()
+ * s'exécute dans un thread virtuel de même nom, ce qui permet de simuler
+ * un très grand nombre de participants. Les appels getId() / getName()
+ * faits dans run() continuent de désigner le participant ; les attentes,
+ * interruptions et Thread.currentThread() portent sur le thread virtuel,
+ * que l'appelant doit donc utiliser pour join() et interrupt().
+ *
+ * Les threads virtuels exigent le JDK 21 et le jar multi-version produit
+ * par le profil Maven jdk21 (classe VirtualThreads de
+ * META-INF/versions/21). Sinon, VIRTUAL retombe sur des threads
+ * plateforme, avec un avertissement.
+ *
+ * Épinglage : sur les JDK 21 à 23, un thread virtuel qui attend dans un
+ * bloc synchronized (wait()) reste attaché à son thread porteur. Les
+ * tampons v1 et v2 (moniteurs Java) limitent donc le nombre de
+ * participants bloqués simultanément au nombre de porteurs ; les versions
+ * v3 et suivantes (sémaphores, ReentrantLock, LockSupport) n'épinglent pas.
+ */
+public enum ThreadMode {
+
+    PLATFORM,
+    VIRTUAL;
+
+    private static volatile boolean warned = false;
+
+    /**
+     * @param name "platform" ou "virtual" (casse indifférente)
+     * @return le mode correspondant
+     * @throws IllegalArgumentException si le nom est inconnu
+     */
+    public static ThreadMode fromName(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "platform":
+                return PLATFORM;
+            case "virtual":
+                return VIRTUAL;
+            default:
+                throw new IllegalArgumentException("threadMode inconnu : " + name);
+        }
+    }
+
+    /**
+     * @return true si ce mode utilise effectivement des threads virtuels
+     */
+    public boolean isVirtual() {
+        return this == VIRTUAL && VirtualThreads.available();
+    }
+
+    /**
+     * Démarre un participant (thread non démarré) selon ce mode.
+     *
+     * @return le thread qui exécute participant.run() : participant lui-même
+     *         en mode PLATFORM, un thread virtuel en mode VIRTUAL
+     */
+    public Thread start(Thread participant) {
+        if (this == VIRTUAL) {
+            if (VirtualThreads.available()) {
+                Thread t = VirtualThreads.unstarted(participant.getName(), participant);
+                t.start();
+                return t;
+            }
+            if (!warned) {
+                warned = true;
+                System.err.println("[threadMode] threads virtuels indisponibles"
+                        + " (JDK < 21 ou exécution hors du jar multi-version) : threads plateforme");
+            }
+        }
+        participant.start();
+        return participant;
+    }
+
+    /**
+     * Démarre les participants dans l'ordre de la liste.
+     *
+     * @return pour chaque participant, le thread qui l'exécute (à utiliser
+     *         pour join() et interrupt())
+     */
+    public Map<Thread, Thread> startAll(List<Thread> participants) {
+        Map<Thread, Thread> running = new IdentityHashMap<>();
+        for (Thread p : participants)
+            running.put(p, start(p));
+        return running;
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase() + (this == VIRTUAL && !VirtualThreads.available() ? " (indisponible)" : "");
+    }
+}
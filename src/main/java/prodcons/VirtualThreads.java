@@ -0,0 +1,22 @@
+package prodcons;
+
+/**
+ * Accès aux threads virtuels, version JDK 17 : ils n'existent pas.
+ *
+ * Le profil Maven jdk21 compile src/main/java21/prodcons/VirtualThreads.java
+ * dans META-INF/versions/21 : exécuté depuis le jar sur un JDK 21 ou plus,
+ * c'est cette version-là qui est chargée.
+ */
+final class VirtualThreads {
+
+    static boolean available() {
+        return false;
+    }
+
+    static Thread unstarted(String name, Runnable task) {
+        throw new UnsupportedOperationException("threads virtuels : JDK 21 requis");
+    }
+
+    private VirtualThreads() {
+    }
+}
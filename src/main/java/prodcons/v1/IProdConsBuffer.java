@@ -1,5 +1,7 @@
 package prodcons.v1;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Buffer partagé entre producteurs et consommateurs.
  * Cette interface représente la vue abstraite du tampon :
@@ -28,6 +30,42 @@ public interface IProdConsBuffer {
      */
     Message get() throws InterruptedException;
 
+    /**
+     * Insère un message sans attendre.
+     *
+     * @param m message à ajouter
+     * @return true si le message a été inséré, false si le tampon est plein
+     */
+    boolean tryPut(Message m);
+
+    /**
+     * Insère un message en attendant au plus timeout qu'une place se libère.
+     *
+     * @param m       message à ajouter
+     * @param timeout délai maximal d'attente
+     * @param unit    unité de timeout
+     * @return true si le message a été inséré, false si le délai a expiré
+     * @throws InterruptedException si le thread est interrompu pendant l'attente
+     */
+    boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Retire un message sans attendre.
+     *
+     * @return le message retiré, ou null si le tampon est vide
+     */
+    Message tryGet();
+
+    /**
+     * Retire un message en attendant au plus timeout qu'un message arrive.
+     *
+     * @param timeout délai maximal d'attente
+     * @param unit    unité de timeout
+     * @return le message retiré, ou null si le délai a expiré
+     * @throws InterruptedException si le thread est interrompu pendant l'attente
+     */
+    Message poll(long timeout, TimeUnit unit) throws InterruptedException;
+
     /**
      * @return nombre de messages actuellement stockés dans le buffer
      */
@@ -1,5 +1,7 @@
 package prodcons.v1;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Implémentation du tampon borné Prod/Cons (solution directe avec wait/notify).
  *
@@ -14,6 +16,14 @@ package prodcons.v1;
  * nfull ≈ count : nombre de cases occupées
  * nempty ≈ buf.length - count : nombre de cases libres
  * 
+ * Variantes sans attente (tryPut / tryGet) et à attente bornée
+ * (offer / poll, via TimeUnit.timedWait sur le moniteur).
+ *
+ * Threads virtuels (threadMode=virtual) : jusqu'au JDK 23, un thread
+ * virtuel qui fait wait() dans une méthode synchronized épingle son thread
+ * porteur ; au plus autant de participants que de porteurs peuvent alors
+ * être bloqués ici en même temps (les versions à partir de v3 n'ont pas
+ * cette limite).
  */
 public class ProdConsBuffer implements IProdConsBuffer {
 
@@ -51,11 +61,11 @@ public class ProdConsBuffer implements IProdConsBuffer {
     /**
      * Construit un tampon de capacité donnée.
      *
-     * @param capacity taille maximale du buffer (doit être ≥ 0)
+     * @param capacity taille maximale du buffer (strictement positive)
      */
     public ProdConsBuffer(int capacity) {
-        if (capacity < 0)
-            throw new IllegalArgumentException("capacity<0");
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity <= 0");
         this.buf = new Message[capacity];
     }
 
@@ -70,15 +80,7 @@ public class ProdConsBuffer implements IProdConsBuffer {
         while (count == buf.length) {
             wait(); // buffer plein => le producteur se bloque
         }
-
-        // Action : écrire le message dans la case "in" et avancer l'index
-        buf[in] = m;
-        in = (in + 1) % buf.length;
-        count++;
-        totalProduced++;
-
-        // Réveil de tous les threads en attente : un consommateur peut maintenant lire.
-        notifyAll();
+        enqueue(m);
     }
 
     /**
@@ -92,7 +94,81 @@ public class ProdConsBuffer implements IProdConsBuffer {
         while (count == 0) {
             wait(); // buffer vide => le consommateur se bloque
         }
+        return dequeue();
+    }
+
+    /**
+     * Production sans attente : échoue si le buffer est plein.
+     */
+    @Override
+    public synchronized boolean tryPut(Message m) {
+        if (count == buf.length)
+            return false;
+        enqueue(m);
+        return true;
+    }
+
+    /**
+     * Production avec attente bornée : même garde que put(), mais on
+     * abandonne lorsque le délai est écoulé.
+     */
+    @Override
+    public synchronized boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (count == buf.length) {
+            long nanos = deadline - System.nanoTime();
+            if (nanos <= 0)
+                return false;
+            TimeUnit.NANOSECONDS.timedWait(this, nanos);
+        }
+        enqueue(m);
+        return true;
+    }
+
+    /**
+     * Consommation sans attente : renvoie null si le buffer est vide.
+     */
+    @Override
+    public synchronized Message tryGet() {
+        if (count == 0)
+            return null;
+        return dequeue();
+    }
+
+    /**
+     * Consommation avec attente bornée : renvoie null si aucun message n'est
+     * arrivé avant la fin du délai.
+     */
+    @Override
+    public synchronized Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (count == 0) {
+            long nanos = deadline - System.nanoTime();
+            if (nanos <= 0)
+                return null;
+            TimeUnit.NANOSECONDS.timedWait(this, nanos);
+        }
+        return dequeue();
+    }
 
+    /**
+     * Action de production (moniteur tenu, au moins une case libre).
+     */
+    private void enqueue(Message m) {
+        // Action : écrire le message dans la case "in" et avancer l'index
+        buf[in] = m;
+        in = (in + 1) % buf.length;
+        count++;
+        totalProduced++;
+
+        // Réveil de tous les threads en attente : un consommateur peut maintenant lire.
+        notifyAll();
+    }
+
+    /**
+     * Action de consommation (moniteur tenu, au moins un message présent).
+     */
+    private Message dequeue() {
         // Action : lire le message de la case "out" et avancer l'index
         Message m = buf[out];
         buf[out] = null; // pas obligatoire
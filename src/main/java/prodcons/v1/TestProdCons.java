@@ -2,9 +2,12 @@ package prodcons.v1;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 
+import prodcons.ThreadMode;
+
 import static java.util.Collections.shuffle;
 
 /**
@@ -37,6 +40,8 @@ public class TestProdCons {
         int consT = Integer.parseInt(p.getProperty("consTime"));
         int minProd = Integer.parseInt(p.getProperty("minProd"));
         int maxProd = Integer.parseInt(p.getProperty("maxProd"));
+        // Exécution des participants (voir prodcons.ThreadMode)
+        ThreadMode threadMode = ThreadMode.fromName(p.getProperty("threadMode", "platform"));
 
         IProdConsBuffer buffer = new ProdConsBuffer(bufSz);
 
@@ -49,6 +54,7 @@ public class TestProdCons {
         Log.info("  consT   = %d ms", consT);
         Log.info("  minProd = %d", minProd);
         Log.info("  maxProd = %d", maxProd);
+        Log.info("  threads = %s", threadMode);
         Log.info("===============================================");
 
         List<Thread> all = new ArrayList<>();
@@ -73,14 +79,14 @@ public class TestProdCons {
 
         // Démarrage dans un ordre mélangé
         shuffle(all, new Random());
-        for (Thread t : all) {
-            t.start();
-        }
+        // En mode virtuel, chaque participant s'exécute dans un thread
+        // virtuel : c'est ce thread que l'on rejoint (et interrompt).
+        Map<Thread, Thread> running = threadMode.startAll(all);
 
         // 1) Attendre la fin de TOUS les producteurs
         Log.info("[TEST v1] Attente de la fin de tous les producteurs...");
         for (Thread pth : producers) {
-            pth.join();
+            running.get(pth).join();
         }
         Log.info("[TEST v1] Tous les producteurs ont terminé. totmsg = %d", buffer.totmsg());
 
@@ -99,10 +105,10 @@ public class TestProdCons {
 
         // 3) Interrompre proprement tous les consommateurs
         for (Thread cth : consumers) {
-            cth.interrupt();
+            running.get(cth).interrupt();
         }
         for (Thread cth : consumers) {
-            cth.join();
+            running.get(cth).join();
         }
 
         // Résumé final
@@ -1,5 +1,7 @@
 package prodcons.v2;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Tampon borné pour la version v2 .
  *
@@ -16,6 +18,14 @@ package prodcons.v2;
  * Les gardes sont :
  * - put : attendre tant que count == buf.length (buffer plein)
  * - get : attendre tant que count == 0 (buffer vide)
+ *
+ * tryPut / tryGet échouent au lieu d'attendre ; offer / poll attendent au
+ * plus le délai fourni (TimeUnit.timedWait sur le moniteur).
+ *
+ * Threads virtuels (threadMode=virtual) : comme en v1, wait() dans un bloc
+ * synchronized épingle le thread porteur jusqu'au JDK 23 ; le nombre de
+ * participants bloqués simultanément est alors borné par le nombre de
+ * porteurs.
  */
 public class ProdConsBuffer implements IProdConsBuffer {
 
@@ -98,13 +108,7 @@ public class ProdConsBuffer implements IProdConsBuffer {
         while (count == buf.length)
             wait(); // buffer plein : le producteur attend
 
-        buf[in] = m;
-        in = (in + 1) % buf.length;
-        count++;
-        totalProduced++;
-
-        // Réveille un ou plusieurs threads en attente (consommateurs typiquement).
-        notifyAll();
+        enqueue(m);
     }
 
     /**
@@ -122,6 +126,81 @@ public class ProdConsBuffer implements IProdConsBuffer {
             return null;
         }
 
+        return dequeue();
+    }
+
+    /**
+     * Insère un message sans attendre ; échoue si le buffer est plein.
+     */
+    @Override
+    public synchronized boolean tryPut(Message m) {
+        if (count == buf.length)
+            return false;
+        enqueue(m);
+        return true;
+    }
+
+    /**
+     * Insère un message en attendant au plus timeout qu'une place se libère.
+     */
+    @Override
+    public synchronized boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (count == buf.length) {
+            long nanos = deadline - System.nanoTime();
+            if (nanos <= 0)
+                return false;
+            TimeUnit.NANOSECONDS.timedWait(this, nanos);
+        }
+        enqueue(m);
+        return true;
+    }
+
+    /**
+     * Retire un message sans attendre ; null si le buffer est vide.
+     */
+    @Override
+    public synchronized Message tryGet() {
+        if (count == 0)
+            return null;
+        return dequeue();
+    }
+
+    /**
+     * Retire un message en attendant au plus timeout ; null si le délai
+     * expire ou si le buffer est fermé et vide.
+     */
+    @Override
+    public synchronized Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (count == 0 && !closed) {
+            long nanos = deadline - System.nanoTime();
+            if (nanos <= 0)
+                return null;
+            TimeUnit.NANOSECONDS.timedWait(this, nanos);
+        }
+        if (count == 0)
+            return null;
+        return dequeue();
+    }
+
+    /**
+     * Écrit un message dans la case in (moniteur tenu, buffer non plein).
+     */
+    private void enqueue(Message m) {
+        buf[in] = m;
+        in = (in + 1) % buf.length;
+        count++;
+        totalProduced++;
+
+        // Réveille un ou plusieurs threads en attente (consommateurs typiquement).
+        notifyAll();
+    }
+
+    /**
+     * Lit le message de la case out (moniteur tenu, buffer non vide).
+     */
+    private Message dequeue() {
         Message m = buf[out];
         buf[out] = null; // nettoyage
         out = (out + 1) % buf.length;
@@ -5,6 +5,8 @@ import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import prodcons.ThreadMode;
+
 /**
  * Test de la version v2 du problème producteur-consommateur.
  *
@@ -30,6 +32,8 @@ public class TestProdCons {
         int consT = Integer.parseInt(p.getProperty("consTime"));
         int minProd = Integer.parseInt(p.getProperty("minProd"));
         int maxProd = Integer.parseInt(p.getProperty("maxProd"));
+        // Exécution des participants (voir prodcons.ThreadMode)
+        ThreadMode threadMode = ThreadMode.fromName(p.getProperty("threadMode", "platform"));
 
         // Tirage des quotas des producteurs avant tout démarrage
         int[] quotas = new int[nProd];
@@ -57,6 +61,7 @@ public class TestProdCons {
         System.out.printf("  consT   = %d ms%n", consT);
         System.out.printf("  minProd = %d%n", minProd);
         System.out.printf("  maxProd = %d%n", maxProd);
+        System.out.printf("  threads = %s%n", threadMode);
         System.out.printf("  TOTAL messages (somme des quotas) = %d%n", TOTAL);
         System.out.println("  Quotas par producteur :");
         for (int i = 0; i < nProd; i++) {
@@ -96,17 +101,18 @@ public class TestProdCons {
 
         // Démarrage mélangé pour bien intercaler producteurs et consommateurs
         Collections.shuffle(all, new Random());
-        for (Thread t : all)
-            t.start();
+        // En mode virtuel, chaque participant s'exécute dans un thread
+        // virtuel : c'est ce thread que l'on rejoint.
+        Map<Thread, Thread> running = threadMode.startAll(all);
 
         // Joindre les producteurs (ils appellent producerDone() à la fin)
         for (Thread pth : producers)
-            pth.join();
+            running.get(pth).join();
 
         // Les consommateurs doivent terminer automatiquement lorsque le
         // buffer est fermé et vide : on les rejoint directement.
         for (Thread c : consumers)
-            c.join();
+            running.get(c).join();
 
         // Résumé final et quelques vérifications simples
         System.out.println("===============================================");
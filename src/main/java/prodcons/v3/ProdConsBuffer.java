@@ -1,6 +1,7 @@
 package prodcons.v3;
 
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tampon borné pour la version v3 utilisant des sémaphores.
@@ -23,6 +24,12 @@ import java.util.concurrent.Semaphore;
  * terminée,
  * - un nombre de consommateurs (consumersCount) pour réveiller ceux qui
  * attendent lorsque le buffer se ferme.
+ *
+ * Variantes sans attente et à attente bornée : tryPut / tryGet utilisent
+ * tryAcquire() sur empty / full, offer / poll utilisent
+ * tryAcquire(timeout, unit). Un consommateur qui obtient un jeton de
+ * fermeture (buffer fermé et vide) le rend aussitôt, pour qu'un tryGet /
+ * poll répété ne prive pas les autres consommateurs de leur réveil.
  */
 public class ProdConsBuffer implements IProdConsBuffer {
 
@@ -154,9 +161,76 @@ public class ProdConsBuffer implements IProdConsBuffer {
     public void put(Message m) throws InterruptedException {
         // Attendre une case libre
         empty.acquire();
+        insert(m);
+    }
+
+    /**
+     * Retire et renvoie un message du buffer.
+     * Bloque si le buffer est vide (full == 0).
+     *
+     * Cas particuliers :
+     * - Si le buffer est fermé (closed == true) ET vide (count == 0)
+     * au moment où le consommateur se réveille, la méthode renvoie null
+     * pour signaler au consommateur qu'il doit terminer.
+     */
+    @Override
+    public Message get() throws InterruptedException {
+        // Attendre qu'un message soit disponible (ou être réveillé par la fermeture)
+        full.acquire();
+        return remove();
+    }
+
+    /**
+     * Insère un message si une case est libre, sans attendre.
+     */
+    @Override
+    public boolean tryPut(Message m) {
+        if (!empty.tryAcquire())
+            return false;
+        insert(m);
+        return true;
+    }
+
+    /**
+     * Insère un message en attendant au plus timeout une case libre.
+     */
+    @Override
+    public boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        if (!empty.tryAcquire(timeout, unit))
+            return false;
+        insert(m);
+        return true;
+    }
 
+    /**
+     * Retire un message s'il y en a un, sans attendre ; null sinon.
+     */
+    @Override
+    public Message tryGet() {
+        if (!full.tryAcquire())
+            return null;
+        return remove();
+    }
+
+    /**
+     * Retire un message en attendant au plus timeout ; null si le délai
+     * expire ou si le buffer est fermé et vide.
+     */
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!full.tryAcquire(timeout, unit))
+            return null;
+        return remove();
+    }
+
+    /**
+     * Insertion proprement dite, une fois une case libre réservée (empty).
+     * Le mutex est pris sans interruption : la section critique est courte
+     * et la case réservée ne doit pas être perdue.
+     */
+    private void insert(Message m) {
         // Entrer en section critique
-        mutex.acquire();
+        mutex.acquireUninterruptibly();
         try {
             buf[in] = m;
             in = (in + 1) % buf.length;
@@ -172,21 +246,14 @@ public class ProdConsBuffer implements IProdConsBuffer {
     }
 
     /**
-     * Retire et renvoie un message du buffer.
-     * Bloque si le buffer est vide (full == 0).
+     * Retrait proprement dit, une fois un jeton full obtenu.
      *
-     * Cas particuliers :
-     * - Si le buffer est fermé (closed == true) ET vide (count == 0)
-     * au moment où le consommateur se réveille, la méthode renvoie null
-     * pour signaler au consommateur qu'il doit terminer.
+     * @return le message, ou null si le jeton était un jeton de fermeture
+     *         (buffer fermé et vide) ; ce jeton est alors rendu
      */
-    @Override
-    public Message get() throws InterruptedException {
-        // Attendre qu'un message soit disponible (ou être réveillé par la fermeture)
-        full.acquire();
-
+    private Message remove() {
         // Entrer en section critique
-        mutex.acquire();
+        mutex.acquireUninterruptibly();
         boolean consumedAny = false;
         try {
             // Si aucun message à lire et que la production est finie,
@@ -205,9 +272,12 @@ public class ProdConsBuffer implements IProdConsBuffer {
         } finally {
             // Sortir de la section critique
             mutex.release();
-            // Si on a effectivement consommé un message, libérer une case
+            // Si on a effectivement consommé un message, libérer une case ;
+            // sinon rendre le jeton de fermeture aux autres consommateurs.
             if (consumedAny) {
                 empty.release();
+            } else {
+                full.release();
             }
         }
     }
@@ -5,6 +5,8 @@ import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import prodcons.ThreadMode;
+
 /**
  * Test de la version v3 du problème producteur-consommateur.
  *
@@ -38,6 +40,8 @@ public class TestProdCons {
         int consT = Integer.parseInt(p.getProperty("consTime"));
         int minProd = Integer.parseInt(p.getProperty("minProd"));
         int maxProd = Integer.parseInt(p.getProperty("maxProd"));
+        // Exécution des participants (voir prodcons.ThreadMode)
+        ThreadMode threadMode = ThreadMode.fromName(p.getProperty("threadMode", "platform"));
 
         // Tirage des quotas de chaque producteur
         int[] quotas = new int[nProd];
@@ -65,6 +69,7 @@ public class TestProdCons {
         System.out.printf("  consT   = %d ms%n", consT);
         System.out.printf("  minProd = %d%n", minProd);
         System.out.printf("  maxProd = %d%n", maxProd);
+        System.out.printf("  threads = %s%n", threadMode);
         System.out.printf("  TOTAL messages (somme des quotas) = %d%n", TOTAL);
         System.out.println("  Quotas par producteur :");
         for (int i = 0; i < nProd; i++) {
@@ -111,17 +116,19 @@ public class TestProdCons {
 
         // Démarrage des threads dans un ordre mélangé pour maximiser la concurrence
         Collections.shuffle(all, new Random());
-        all.forEach(Thread::start);
+        // En mode virtuel, chaque participant s'exécute dans un thread
+        // virtuel : c'est ce thread que l'on rejoint.
+        Map<Thread, Thread> running = threadMode.startAll(all);
 
         // Joindre les producteurs (ils appellent producerDone() à la fin)
         for (Thread t : producers) {
-            t.join();
+            running.get(t).join();
         }
 
         // Les consommateurs s'arrêteront automatiquement lorsque le buffer
         // sera fermé et vide : on les rejoint directement.
         for (Thread t : consumers) {
-            t.join();
+            running.get(t).join();
         }
 
         // Résumé final et vérification simple de cohérence
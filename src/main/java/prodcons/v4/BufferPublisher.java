@@ -0,0 +1,268 @@
+package prodcons.v4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptateur Flow.Publisher au-dessus d'un ProdConsBuffer v4.
+ *
+ * Chaque abonné reçoit des messages retirés du buffer selon la demande
+ * qu'il exprime par request(n) : les abonnés se partagent les messages
+ * (chaque message va à un seul abonné), comme des consommateurs.
+ *
+ * Aucun thread n'est bloqué dans get() :
+ * - tant que l'abonné a de la demande, les messages présents sont retirés
+ * par lots (drainTo, une seule prise du verrou pour au plus batchSize
+ * messages) puis livrés par onNext,
+ * - si le buffer est vide, un getAsync() est inscrit ; sa complétion
+ * relance la livraison,
+ * - lorsque le buffer est fermé et vide (getAsync() complété avec null, ou
+ * whenDrained() complété alors que la demande est épuisée), l'abonné
+ * reçoit onComplete, même sans nouvelle demande.
+ *
+ * Les signaux d'un abonné sont émis en série sur l'Executor fourni
+ * (ForkJoinPool.commonPool() par défaut), via un compteur de travail
+ * (wip) : une seule boucle de livraison s'exécute à la fois par abonné.
+ *
+ * cancel() retire le getAsync() en attente ; si un message lui a déjà été
+ * remis, il est tout de même livré (un dernier onNext après cancel est
+ * permis par Flow) plutôt que perdu. Après onError ou onComplete, en
+ * revanche, plus aucun signal n'est émis : le getAsync() en attente est
+ * retiré, et un message remis trop tard n'est pas livré.
+ */
+public class BufferPublisher implements Flow.Publisher<Message> {
+
+    /**
+     * Taille de lot par défaut.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 16;
+
+    private final ProdConsBuffer buffer;
+    private final Executor executor;
+    private final int batchSize;
+
+    /**
+     * Construit un publisher sur buffer, livrant sur le pool commun.
+     */
+    public BufferPublisher(ProdConsBuffer buffer) {
+        this(buffer, ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param buffer    buffer dont les messages sont publiés
+     * @param executor  exécuteur des livraisons aux abonnés
+     * @param batchSize nombre maximal de messages retirés par prise du
+     *                  verrou (strictement positif)
+     */
+    public BufferPublisher(ProdConsBuffer buffer, Executor executor, int batchSize) {
+        if (buffer == null)
+            throw new NullPointerException("buffer == null");
+        if (executor == null)
+            throw new NullPointerException("executor == null");
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("batchSize <= 0");
+        this.buffer = buffer;
+        this.executor = executor;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Message> subscriber) {
+        if (subscriber == null)
+            throw new NullPointerException("subscriber == null");
+        Subscription s = new Subscription(subscriber);
+        // Fin du buffer constatée même sans demande en cours.
+        buffer.whenDrained().thenRun(s::schedule);
+        // wip vaut 1 pendant onSubscribe : un request() fait dans
+        // onSubscribe ne lance pas de livraison concurrente.
+        executor.execute(() -> {
+            try {
+                subscriber.onSubscribe(s);
+            } catch (Throwable t) {
+                s.done = true;
+            }
+            s.drain();
+        });
+    }
+
+    /**
+     * Abonnement d'un abonné : demande, boucle de livraison et getAsync()
+     * en attente.
+     */
+    private final class Subscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super Message> subscriber;
+
+        /**
+         * Demande restante (Long.MAX_VALUE = illimitée).
+         */
+        private final AtomicLong requested = new AtomicLong();
+
+        /**
+         * Nombre de relances de la boucle de livraison en attente.
+         */
+        private final AtomicInteger wip = new AtomicInteger(1);
+
+        /**
+         * Vrai après cancel(), onComplete ou onError : plus de nouvelle
+         * demande servie.
+         */
+        volatile boolean done;
+
+        /**
+         * Vrai après onComplete ou onError : plus aucun signal, pas même
+         * le message d'un getAsync() remis trop tard.
+         */
+        private volatile boolean terminated;
+
+        /**
+         * request(n) invalide à signaler par onError.
+         */
+        private volatile Throwable error;
+
+        /**
+         * getAsync() inscrit faute de message, ou null.
+         */
+        private volatile CompletableFuture<Message> pending;
+
+        /**
+         * Résultat de pending, à livrer par la boucle : un message, ou
+         * closed = true si le buffer est fermé et vide.
+         */
+        private volatile Message carried;
+        private volatile boolean closed;
+
+        private final List<Message> batch = new ArrayList<>();
+
+        Subscription(Flow.Subscriber<? super Message> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("n <= 0");
+            } else {
+                requested.accumulateAndGet(n, (r, k) -> r + k < 0 ? Long.MAX_VALUE : r + k);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            CompletableFuture<Message> f = pending;
+            if (f != null)
+                f.cancel(false);
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0)
+                executor.execute(this::drain);
+        }
+
+        /**
+         * Boucle de livraison, exécutée par un seul thread à la fois.
+         */
+        void drain() {
+            int missed = 1;
+            do {
+                step();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void step() {
+            try {
+                // Message remis à un getAsync() déjà annulé : livré quand même.
+                Message c = carried;
+                if (c != null) {
+                    carried = null;
+                    if (terminated)
+                        return;
+                    produced(1);
+                    subscriber.onNext(c);
+                }
+                if (done)
+                    return;
+                Throwable e = error;
+                if (e != null) {
+                    terminate();
+                    subscriber.onError(e);
+                    return;
+                }
+                if (closed) {
+                    terminate();
+                    subscriber.onComplete();
+                    return;
+                }
+                while (!done && pending == null) {
+                    long r = requested.get();
+                    if (r == 0) {
+                        // Sans demande, aucun getAsync() ne verra la fin :
+                        // on la constate ici (relance par whenDrained()).
+                        if (buffer.isClosed() && buffer.nmsg() == 0) {
+                            terminate();
+                            subscriber.onComplete();
+                        }
+                        return;
+                    }
+                    batch.clear();
+                    if (buffer.drainTo(batch, (int) Math.min(r, batchSize)) == 0) {
+                        awaitMessage();
+                        return;
+                    }
+                    produced(batch.size());
+                    for (Message m : batch)
+                        subscriber.onNext(m);
+                }
+            } catch (Throwable t) {
+                // Abonné défaillant : on le traite comme un cancel().
+                cancel();
+            }
+        }
+
+        /**
+         * Buffer vide : inscrit un getAsync() dont la complétion relance la
+         * boucle.
+         */
+        private void awaitMessage() {
+            CompletableFuture<Message> f = buffer.getAsync();
+            pending = f;
+            f.whenComplete((m, ex) -> {
+                if (ex == null && !terminated) {
+                    if (m != null)
+                        carried = m;
+                    else
+                        closed = true;
+                }
+                pending = null;
+                schedule();
+            });
+        }
+
+        private void produced(long n) {
+            requested.accumulateAndGet(n, (r, k) -> r == Long.MAX_VALUE ? r : r - k);
+        }
+
+        /**
+         * Avant onError / onComplete : retire le getAsync() en attente pour
+         * qu'aucun message ne soit plus remis à cet abonnement.
+         */
+        private void terminate() {
+            done = true;
+            terminated = true;
+            CompletableFuture<Message> f = pending;
+            if (f != null)
+                f.cancel(false);
+            carried = null;
+            batch.clear();
+        }
+    }
+}
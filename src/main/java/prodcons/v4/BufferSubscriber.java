@@ -0,0 +1,129 @@
+package prodcons.v4;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptateur Flow.Subscriber qui alimente un ProdConsBuffer v4.
+ *
+ * L'abonné se comporte comme un producteur du buffer : il doit être
+ * compté dans setProducersCount(n), et appelle producerDone() à la
+ * réception de onComplete ou onError.
+ *
+ * Contre-pression : l'abonné ne demande jamais plus de prefetch messages
+ * non encore entrés dans le buffer. Chaque onNext fait un putAsync() (le
+ * thread de l'éditeur n'est jamais bloqué) ; lorsque limit messages
+ * (prefetch / 2) sont entrés dans le buffer, c'est-à-dire lorsque des
+ * consommateurs ont libéré autant de cases, il les redemande d'un seul
+ * request(limit).
+ */
+public class BufferSubscriber implements Flow.Subscriber<Message> {
+
+    private final ProdConsBuffer buffer;
+    private final int prefetch;
+    private final int limit;
+
+    /**
+     * Messages entrés dans le buffer depuis le dernier request().
+     */
+    private final AtomicInteger accepted = new AtomicInteger();
+
+    private volatile Flow.Subscription subscription;
+
+    /**
+     * Erreur reçue par onError, ou null.
+     */
+    private volatile Throwable error;
+
+    /**
+     * Construit un abonné demandant au plus la capacité du buffer.
+     */
+    public BufferSubscriber(ProdConsBuffer buffer) {
+        this(buffer, buffer.capacity());
+    }
+
+    /**
+     * @param buffer   buffer alimenté
+     * @param prefetch nombre maximal de messages demandés et pas encore
+     *                 entrés dans le buffer (strictement positif)
+     */
+    public BufferSubscriber(ProdConsBuffer buffer, int prefetch) {
+        if (buffer == null)
+            throw new NullPointerException("buffer == null");
+        if (prefetch <= 0)
+            throw new IllegalArgumentException("prefetch <= 0");
+        this.buffer = buffer;
+        this.prefetch = prefetch;
+        this.limit = Math.max(1, prefetch / 2);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription s) {
+        if (s == null)
+            throw new NullPointerException("s == null");
+        if (subscription != null) {
+            // Un seul abonnement à la fois (règle 2.5 de Flow).
+            s.cancel();
+            return;
+        }
+        subscription = s;
+        s.request(prefetch);
+    }
+
+    @Override
+    public void onNext(Message m) {
+        // Règle 2.13 de Flow : un élément null est refusé.
+        if (m == null)
+            throw new NullPointerException("m == null");
+        CompletableFuture<Void> f = buffer.putAsync(m);
+        if (f.isDone())
+            accepted();
+        else
+            f.thenRun(this::accepted);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (t == null)
+            throw new NullPointerException("t == null");
+        error = t;
+        Log.info("BufferSubscriber : erreur de l'éditeur (%s)", t);
+        buffer.producerDone();
+    }
+
+    /**
+     * Les putAsync() encore en attente restent dans le buffer : ils seront
+     * servis avant que les consommateurs voient la fin.
+     */
+    @Override
+    public void onComplete() {
+        buffer.producerDone();
+    }
+
+    /**
+     * @return l'erreur reçue par onError, ou null
+     */
+    public Throwable error() {
+        return error;
+    }
+
+    /**
+     * Arrête l'abonnement (sans signaler la fin au buffer).
+     */
+    public void cancel() {
+        Flow.Subscription s = subscription;
+        if (s != null)
+            s.cancel();
+    }
+
+    /**
+     * Un message est entré dans le buffer : redemande par paquets de limit.
+     */
+    private void accepted() {
+        if (accepted.incrementAndGet() % limit == 0) {
+            accepted.addAndGet(-limit);
+            subscription.request(limit);
+        }
+    }
+}
@@ -0,0 +1,564 @@
+package prodcons.v4;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tampon borné à livraison différée pour la version v4.
+ *
+ * put(m, delay, unit) dépose un message qui ne sera pas rendu par get()
+ * avant l'écoulement du délai (relances, travaux planifiés). put(m) utilise
+ * le délai par défaut du tampon (nul sauf indication contraire).
+ *
+ * Les messages en attente sont rangés dans une roue temporelle
+ * hiérarchique (LEVELS niveaux de WHEEL_SIZE cases) plutôt que dans un tas
+ * comme DelayQueue :
+ * - insertion en O(1) : un message dont l'échéance est à moins de
+ * WHEEL_SIZE^(L+1) ticks va dans le niveau L, case
+ * (tick d'échéance / WHEEL_SIZE^L) mod WHEEL_SIZE,
+ * - à chaque tick, la case courante du niveau 0 passe d'un bloc dans
+ * l'anneau des messages prêts ; lorsque le niveau L-1 a fait un tour, la
+ * case suivante du niveau L est redistribuée dans les niveaux inférieurs
+ * (cascade),
+ * - la roue n'avance que lors des opérations (pas de thread minuteur) et
+ * saute directement les périodes sans échéance.
+ *
+ * Un message n'est jamais livré avant son échéance ; il peut l'être
+ * jusqu'à un tick après. Les messages d'un même tick ne sont pas
+ * forcément livrés dans l'ordre de dépôt : un message redescendu par
+ * cascade passe après ceux rangés directement dans la case du niveau 0.
+ *
+ * Comme DelayQueue, un seul consommateur (leader) attend la prochaine
+ * échéance avec un délai ; les autres attendent sans délai.
+ *
+ * La capacité borne le total des messages prêts et en attente. La
+ * terminaison suit le contrat buffer-centré de la v4 : setProducersCount(n),
+ * producerDone(), isClosed(), et get() renvoie null lorsque le buffer est
+ * fermé et qu'il ne reste ni message prêt ni message en attente.
+ */
+public class DelayProdConsBuffer implements IProdConsBuffer {
+
+    /**
+     * Nombre de bits d'index par niveau (WHEEL_SIZE = 64 cases).
+     */
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    /**
+     * Nombre de niveaux : 64^4 ticks, soit plus de 4 h avec un tick de 1 ms.
+     * Au-delà, un message est rangé au dernier niveau et redescend par
+     * cascades successives.
+     */
+    private static final int LEVELS = 4;
+
+    /**
+     * Durée d'un tick par défaut (1 ms).
+     */
+    private static final long DEFAULT_TICK_NANOS = 1_000_000L;
+
+    /**
+     * Message en attente dans une case de la roue.
+     */
+    private static final class Node {
+        final Message msg;
+
+        /**
+         * Tick à partir duquel le message peut être livré.
+         */
+        final long tick;
+
+        Node next;
+
+        Node(Message msg, long tick) {
+            this.msg = msg;
+            this.tick = tick;
+        }
+    }
+
+    /**
+     * Roue hiérarchique : tête et queue de la liste (FIFO) de chaque case.
+     */
+    private final Node[][] heads = new Node[LEVELS][WHEEL_SIZE];
+    private final Node[][] tails = new Node[LEVELS][WHEEL_SIZE];
+
+    /**
+     * Nombre de messages en attente, par niveau.
+     */
+    private final int[] levelCounts = new int[LEVELS];
+
+    /**
+     * Anneau des messages prêts. Sa taille est la capacité : il ne peut pas
+     * déborder puisque la capacité borne aussi les messages en attente.
+     */
+    private final Message[] ready;
+    private int in = 0;
+    private int out = 0;
+    private int readyCount = 0;
+
+    /**
+     * Nombre de messages en attente dans la roue.
+     */
+    private int pending = 0;
+
+    /**
+     * Durée d'un tick, et origine des ticks (System.nanoTime()).
+     */
+    private final long tickNanos;
+    private final long origin;
+
+    /**
+     * Dernier tick traité par advance().
+     */
+    private long currentTick = 0;
+
+    /**
+     * Délai appliqué par put(m), tryPut(m) et offer(m, ...).
+     */
+    private final long defaultDelayNanos;
+
+    /**
+     * Consommateur qui attend la prochaine échéance (null = aucun).
+     */
+    private Thread leader = null;
+
+    /**
+     * Messages prêts et en attente. Volatile : relu sans verrou par nmsg().
+     */
+    private volatile int count = 0;
+
+    private int totalProduced = 0;
+    private int producersRemaining = 0;
+    private volatile boolean closed = false;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * Condition "message prêt, échéance plus proche, ou buffer fermé".
+     */
+    private final Condition available = lock.newCondition();
+
+    /**
+     * Construit un tampon sans délai par défaut.
+     *
+     * @param capacity taille maximale du buffer (strictement positive)
+     */
+    public DelayProdConsBuffer(int capacity) {
+        this(capacity, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Construit un tampon avec un délai par défaut.
+     *
+     * @param capacity     taille maximale du buffer (strictement positive)
+     * @param defaultDelay délai appliqué par put(m) (positif ou nul)
+     * @param unit         unité de defaultDelay
+     */
+    public DelayProdConsBuffer(int capacity, long defaultDelay, TimeUnit unit) {
+        this(capacity, unit.toNanos(defaultDelay), DEFAULT_TICK_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Construit un tampon avec un délai par défaut et une résolution de
+     * roue donnée.
+     *
+     * @param capacity     taille maximale du buffer (strictement positive)
+     * @param defaultDelay délai appliqué par put(m) (positif ou nul)
+     * @param tick         durée d'un tick de la roue (strictement positive)
+     * @param unit         unité de defaultDelay et tick
+     */
+    public DelayProdConsBuffer(int capacity, long defaultDelay, long tick, TimeUnit unit) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity <= 0");
+        if (defaultDelay < 0)
+            throw new IllegalArgumentException("defaultDelay < 0");
+        if (tick <= 0)
+            throw new IllegalArgumentException("tick <= 0");
+        this.ready = new Message[capacity];
+        this.defaultDelayNanos = unit.toNanos(defaultDelay);
+        this.tickNanos = Math.max(1, unit.toNanos(tick));
+        this.origin = System.nanoTime();
+    }
+
+    @Override
+    public void setProducersCount(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n < 0");
+        lock.lock();
+        try {
+            this.producersRemaining = n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void producerDone() {
+        lock.lock();
+        try {
+            if (producersRemaining > 0) {
+                producersRemaining--;
+                if (producersRemaining == 0) {
+                    closed = true;
+                    available.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void put(Message m) throws InterruptedException {
+        put(m, defaultDelayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Dépose m pour une livraison au plus tôt dans delay ; bloque tant que
+     * le buffer est plein.
+     *
+     * @param delay délai avant livraison (0 ou négatif = immédiate)
+     * @param unit  unité de delay
+     */
+    public void put(Message m, long delay, TimeUnit unit) throws InterruptedException {
+        long delayNanos = unit.toNanos(delay);
+        lock.lock();
+        try {
+            while (count == ready.length)
+                notFull.await();
+            enqueue(m, delayNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Renvoie le prochain message dont l'échéance est passée ; bloque
+     * jusqu'à la prochaine échéance s'il n'y en a pas, ou renvoie null si
+     * le buffer est fermé et vide.
+     */
+    @Override
+    public Message get() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                advance(System.nanoTime());
+                if (readyCount > 0)
+                    return dequeue();
+                if (closed && pending == 0)
+                    return null;
+                if (pending == 0 || leader != null) {
+                    available.await();
+                } else {
+                    Thread me = Thread.currentThread();
+                    leader = me;
+                    try {
+                        available.awaitNanos(nanosToNextEvent());
+                    } finally {
+                        if (leader == me)
+                            leader = null;
+                    }
+                }
+            }
+        } finally {
+            // Passer le relais : un autre consommateur surveille la roue.
+            if (leader == null && (readyCount > 0 || pending > 0))
+                available.signal();
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean tryPut(Message m) {
+        lock.lock();
+        try {
+            if (count == ready.length)
+                return false;
+            enqueue(m, defaultDelayNanos);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == ready.length) {
+                if (nanos <= 0)
+                    return false;
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(m, defaultDelayNanos);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message tryGet() {
+        lock.lock();
+        try {
+            advance(System.nanoTime());
+            return readyCount > 0 ? dequeue() : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                advance(System.nanoTime());
+                if (readyCount > 0)
+                    return dequeue();
+                if ((closed && pending == 0) || nanos <= 0)
+                    return null;
+                if (pending == 0 || leader != null) {
+                    nanos = available.awaitNanos(nanos);
+                } else {
+                    Thread me = Thread.currentThread();
+                    leader = me;
+                    try {
+                        long wait = Math.min(nanos, nanosToNextEvent());
+                        nanos -= wait - available.awaitNanos(wait);
+                    } finally {
+                        if (leader == me)
+                            leader = null;
+                    }
+                }
+            }
+        } finally {
+            if (leader == null && (readyCount > 0 || pending > 0))
+                available.signal();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return nombre de messages en attente de leur échéance
+     */
+    public int pending() {
+        lock.lock();
+        try {
+            advance(System.nanoTime());
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Range m dans l'anneau des prêts ou dans la roue (verrou tenu, buffer
+     * non plein).
+     */
+    private void enqueue(Message m, long delayNanos) {
+        long now = System.nanoTime();
+        advance(now);
+        count++;
+        totalProduced++;
+        if (delayNanos <= 0) {
+            addReady(m);
+            available.signal();
+            return;
+        }
+        long tick = ceilTick(now + delayNanos);
+        if (tick <= currentTick) {
+            addReady(m);
+            available.signal();
+            return;
+        }
+        schedule(new Node(m, tick));
+        pending++;
+        // L'échéance la plus proche a peut-être changé : le leader doit
+        // recalculer son délai d'attente.
+        leader = null;
+        available.signal();
+    }
+
+    /**
+     * Retire le message prêt le plus ancien (verrou tenu, readyCount > 0).
+     */
+    private Message dequeue() {
+        Message m = ready[out];
+        ready[out] = null;
+        out = (out + 1) % ready.length;
+        readyCount--;
+        count--;
+        notFull.signal();
+        // Dernier message après la fermeture : les consommateurs endormis
+        // pendant que des messages étaient en attente doivent voir la fin.
+        if (count == 0 && closed)
+            available.signalAll();
+        return m;
+    }
+
+    private void addReady(Message m) {
+        ready[in] = m;
+        in = (in + 1) % ready.length;
+        readyCount++;
+    }
+
+    /**
+     * Range n dans le niveau correspondant à son échéance relative au tick
+     * courant (verrou tenu, n.tick > currentTick).
+     */
+    private void schedule(Node n) {
+        long delta = n.tick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (WHEEL_BITS * (level + 1)))
+            level++;
+        // Échéance au-delà du dernier niveau : rangée au plus loin, elle
+        // redescendra par cascade et sera reclassée selon son vrai tick.
+        long slotTick = Math.min(n.tick, currentTick + (1L << (WHEEL_BITS * LEVELS)) - 1);
+        int b = (int) ((slotTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        n.next = null;
+        if (tails[level][b] == null)
+            heads[level][b] = n;
+        else
+            tails[level][b].next = n;
+        tails[level][b] = n;
+        levelCounts[level]++;
+    }
+
+    /**
+     * Avance la roue jusqu'au tick de now (verrou tenu) : cascades des
+     * niveaux supérieurs, puis passage des cases échues du niveau 0 dans
+     * l'anneau des prêts. Les ticks sans événement possible sont sautés.
+     */
+    private void advance(long now) {
+        long nowTick = (now - origin) / tickNanos;
+        int moved = 0;
+        while (currentTick < nowTick) {
+            if (pending == 0) {
+                currentTick = nowTick;
+                break;
+            }
+            // Plus bas niveau non vide : rien ne peut arriver avant la
+            // prochaine frontière de ce niveau.
+            int low = 0;
+            while (levelCounts[low] == 0)
+                low++;
+            long step = 1L << (WHEEL_BITS * low);
+            long t = (currentTick + step) & -step;
+            if (t > nowTick) {
+                currentTick = nowTick;
+                break;
+            }
+            currentTick = t;
+
+            for (int level = LEVELS - 1; level >= 1; level--) {
+                if ((t & ((1L << (WHEEL_BITS * level)) - 1)) == 0)
+                    moved += cascade(level, (int) ((t >>> (WHEEL_BITS * level)) & WHEEL_MASK));
+            }
+
+            int b = (int) (t & WHEEL_MASK);
+            Node n = heads[0][b];
+            heads[0][b] = tails[0][b] = null;
+            while (n != null) {
+                Node nx = n.next;
+                addReady(n.msg);
+                levelCounts[0]--;
+                pending--;
+                moved++;
+                n = nx;
+            }
+        }
+        if (moved == 1)
+            available.signal();
+        else if (moved > 1)
+            available.signalAll();
+    }
+
+    /**
+     * Redistribue la case b du niveau level dans les niveaux inférieurs
+     * (ou dans l'anneau des prêts si l'échéance est atteinte).
+     *
+     * @return nombre de messages devenus prêts
+     */
+    private int cascade(int level, int b) {
+        int moved = 0;
+        Node n = heads[level][b];
+        heads[level][b] = tails[level][b] = null;
+        while (n != null) {
+            Node nx = n.next;
+            levelCounts[level]--;
+            if (n.tick <= currentTick) {
+                addReady(n.msg);
+                pending--;
+                moved++;
+            } else {
+                schedule(n);
+            }
+            n = nx;
+        }
+        return moved;
+    }
+
+    /**
+     * Délai jusqu'au prochain tick où un message peut devenir prêt (verrou
+     * tenu, pending > 0) : le plus proche entre la case non vide suivante
+     * du niveau 0 et la prochaine cascade de chaque niveau supérieur non
+     * vide (une cascade peut rendre prêt un message d'un niveau supérieur
+     * avant la prochaine case non vide du niveau 0).
+     */
+    private long nanosToNextEvent() {
+        long next = Long.MAX_VALUE;
+        if (levelCounts[0] > 0) {
+            for (long t = currentTick + 1; t <= currentTick + WHEEL_SIZE; t++) {
+                if (heads[0][(int) (t & WHEEL_MASK)] != null) {
+                    next = t;
+                    break;
+                }
+            }
+        }
+        for (int level = 1; level < LEVELS; level++) {
+            if (levelCounts[level] > 0) {
+                long step = 1L << (WHEEL_BITS * level);
+                next = Math.min(next, (currentTick + step) & -step);
+            }
+        }
+        return Math.max(0, origin + next * tickNanos - System.nanoTime());
+    }
+
+    /**
+     * Premier tick dont le début est postérieur ou égal à deadline.
+     */
+    private long ceilTick(long deadline) {
+        long d = deadline - origin;
+        if (d <= 0)
+            return 0;
+        return (d + tickNanos - 1) / tickNanos;
+    }
+
+    /**
+     * Nombre de messages présents, prêts ou en attente de leur échéance.
+     */
+    @Override
+    public int nmsg() {
+        return count;
+    }
+
+    @Override
+    public int totmsg() {
+        lock.lock();
+        try {
+            return totalProduced;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package prodcons.v4;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tampon borné hors tas (off-heap) pour la version v4.
+ *
+ * Pour de très grandes capacités (millions de messages en vol), un tableau
+ * Message[] encombre la vieille génération et allonge les pauses du GC.
+ * Ici, les messages sont stockés comme des enregistrements de taille fixe
+ * dans un ByteBuffer direct (ByteBuffer.allocateDirect), hors du tas Java :
+ *
+ * enregistrement i (RECORD_SIZE = 16 octets, à l'offset i * 16) :
+ * - [0..3] id (int),
+ * - [4..7] inutilisé (alignement),
+ * - [8..15] producerTid (long).
+ *
+ * L'empreinte mémoire est donc exactement capacity * 16 octets, connue à la
+ * construction et indépendante du tas (limitée par -XX:MaxDirectMemorySize).
+ *
+ * Sémantique put / get / fermeture identique à ProdConsBuffer (verrou
+ * équitable, conditions notFull / notEmpty, WaitStrategy). L'API sans
+ * allocation put(id, tid) / get(MessageHandler) est aussi disponible, ainsi
+ * que tryPut(id, tid) et offer(id, tid, timeout, unit).
+ */
+public class DirectProdConsBuffer implements IProdConsBuffer {
+
+    /**
+     * Taille d'un enregistrement en octets.
+     */
+    public static final int RECORD_SIZE = 16;
+
+    private static final int ID_OFFSET = 0;
+    private static final int TID_OFFSET = 8;
+
+    /**
+     * Zone mémoire hors tas contenant les enregistrements.
+     */
+    private final ByteBuffer mem;
+
+    /**
+     * Capacité en nombre de messages.
+     */
+    private final int capacity;
+
+    /**
+     * Index (en enregistrements) de la prochaine écriture.
+     */
+    private int in = 0;
+
+    /**
+     * Index (en enregistrements) de la prochaine lecture.
+     */
+    private int out = 0;
+
+    /**
+     * Nombre de messages présents (volatile pour la WaitStrategy).
+     */
+    private volatile int count = 0;
+
+    /**
+     * Nombre total de messages produits depuis le début.
+     */
+    private int totalProduced = 0;
+
+    /**
+     * Nombre de producteurs n'ayant pas encore signalé leur fin.
+     */
+    private int producersRemaining = 0;
+
+    /**
+     * Indique que tous les producteurs ont terminé.
+     */
+    private volatile boolean closed = false;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * Stratégie d'attente sur notFull / notEmpty.
+     */
+    private final WaitStrategy waitStrategy;
+    private final BooleanSupplier hasRoom;
+    private final BooleanSupplier hasMessageOrClosed;
+
+    /**
+     * Construit un tampon hors tas avec attente bloquante.
+     *
+     * @param capacity nombre maximal de messages (strictement positif)
+     */
+    public DirectProdConsBuffer(int capacity) {
+        this(capacity, WaitStrategy.blocking());
+    }
+
+    /**
+     * Construit un tampon hors tas avec une stratégie d'attente.
+     *
+     * @param capacity     nombre maximal de messages (strictement positif)
+     * @param waitStrategy stratégie d'attente lorsque le buffer est plein / vide
+     */
+    public DirectProdConsBuffer(int capacity, WaitStrategy waitStrategy) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity <= 0");
+        if (capacity > Integer.MAX_VALUE / RECORD_SIZE)
+            throw new IllegalArgumentException("capacity > " + Integer.MAX_VALUE / RECORD_SIZE);
+        if (waitStrategy == null)
+            throw new NullPointerException("waitStrategy == null");
+        this.capacity = capacity;
+        this.mem = ByteBuffer.allocateDirect(capacity * RECORD_SIZE).order(ByteOrder.nativeOrder());
+        this.waitStrategy = waitStrategy;
+        this.hasRoom = () -> count < this.capacity;
+        this.hasMessageOrClosed = () -> count > 0 || closed;
+    }
+
+    /**
+     * @return taille en octets de la zone hors tas (capacity * RECORD_SIZE)
+     */
+    public long footprint() {
+        return (long) capacity * RECORD_SIZE;
+    }
+
+    @Override
+    public void setProducersCount(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n < 0");
+        lock.lock();
+        try {
+            this.producersRemaining = n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void producerDone() {
+        lock.lock();
+        try {
+            if (producersRemaining > 0) {
+                producersRemaining--;
+                if (producersRemaining == 0) {
+                    closed = true;
+                    notEmpty.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Insère un message donné par ses champs.
+     * Bloque tant que le buffer est plein.
+     *
+     * @param id          identifiant du message
+     * @param producerTid identifiant du thread producteur
+     * @throws InterruptedException si le thread est interrompu pendant l'attente
+     */
+    public void put(int id, long producerTid) throws InterruptedException {
+        lock.lock();
+        try {
+            while (count == capacity) {
+                waitStrategy.await(lock, notFull, hasRoom);
+            }
+            enqueue(id, producerTid);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Insère un message donné par ses champs, sans attendre.
+     *
+     * @param id          identifiant du message
+     * @param producerTid identifiant du thread producteur
+     * @return true si le message a été inséré, false si le buffer est plein
+     */
+    public boolean tryPut(int id, long producerTid) {
+        lock.lock();
+        try {
+            if (count == capacity)
+                return false;
+            enqueue(id, producerTid);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Insère un message donné par ses champs, en attendant au plus timeout
+     * qu'une place se libère.
+     *
+     * @param id          identifiant du message
+     * @param producerTid identifiant du thread producteur
+     * @param timeout     délai maximal d'attente
+     * @param unit        unité de timeout
+     * @return true si le message a été inséré, false si le délai a expiré
+     * @throws InterruptedException si le thread est interrompu pendant l'attente
+     */
+    public boolean offer(int id, long producerTid, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == capacity) {
+                if (nanos <= 0)
+                    return false;
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(id, producerTid);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retire un message et le passe au rappel (appelé hors verrou).
+     *
+     * @param handler rappel recevant (id, producerTid)
+     * @return true si un message a été traité, false si le buffer est fermé
+     *         et vide
+     * @throws InterruptedException si le thread est interrompu pendant l'attente
+     */
+    public boolean get(MessageHandler handler) throws InterruptedException {
+        int id;
+        long tid;
+        lock.lock();
+        try {
+            while (count == 0 && !closed) {
+                waitStrategy.await(lock, notEmpty, hasMessageOrClosed);
+            }
+            if (count == 0)
+                return false;
+            int base = out * RECORD_SIZE;
+            id = mem.getInt(base + ID_OFFSET);
+            tid = mem.getLong(base + TID_OFFSET);
+            out = (out + 1) % capacity;
+            count--;
+            notFull.signal();
+        } finally {
+            lock.unlock();
+        }
+        handler.onMessage(id, tid);
+        return true;
+    }
+
+    @Override
+    public void put(Message m) throws InterruptedException {
+        put(m.id, m.producerTid);
+    }
+
+    /**
+     * Retire un message et le reconstruit sur le tas.
+     * Renvoie null si le buffer est fermé et vide.
+     */
+    @Override
+    public Message get() throws InterruptedException {
+        lock.lock();
+        try {
+            while (count == 0 && !closed) {
+                waitStrategy.await(lock, notEmpty, hasMessageOrClosed);
+            }
+            if (count == 0)
+                return null;
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean tryPut(Message m) {
+        return tryPut(m.id, m.producerTid);
+    }
+
+    @Override
+    public boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        return offer(m.id, m.producerTid, timeout, unit);
+    }
+
+    @Override
+    public Message tryGet() {
+        lock.lock();
+        try {
+            if (count == 0)
+                return null;
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0 && !closed) {
+                if (nanos <= 0)
+                    return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            if (count == 0)
+                return null;
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Écrit un enregistrement à la position in (verrou tenu, buffer non plein).
+     */
+    private void enqueue(int id, long producerTid) {
+        int base = in * RECORD_SIZE;
+        mem.putInt(base + ID_OFFSET, id);
+        mem.putLong(base + TID_OFFSET, producerTid);
+        in = (in + 1) % capacity;
+        count++;
+        totalProduced++;
+        notEmpty.signal();
+    }
+
+    /**
+     * Lit l'enregistrement à la position out et le reconstruit en Message
+     * (verrou tenu, buffer non vide).
+     */
+    private Message dequeue() {
+        int base = out * RECORD_SIZE;
+        Message m = new Message(mem.getInt(base + ID_OFFSET), mem.getLong(base + TID_OFFSET));
+        out = (out + 1) % capacity;
+        count--;
+        notFull.signal();
+        return m;
+    }
+
+    @Override
+    public int nmsg() {
+        return count;
+    }
+
+    @Override
+    public int totmsg() {
+        lock.lock();
+        try {
+            return totalProduced;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package prodcons.v4;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tampon borné à capacité variable pour la version v4.
+ *
+ * Même schéma que ProdConsBuffer (buffer circulaire, ReentrantLock
+ * équitable, conditions notFull / notEmpty, WaitStrategy), mais le buffer
+ * circulaire est réalloué selon la charge :
+ * - croissance : lorsque des producteurs ont trouvé le buffer plein
+ * GROW_AFTER fois depuis la dernière période de faible occupation, la
+ * capacité double, sans dépasser maxCapacity ;
+ * - réduction : lorsque l'occupation reste sous le quart de la capacité
+ * pendant SHRINK_AFTER_ROUNDS tours de buffer (capacité × rounds retraits
+ * consécutifs), la capacité est divisée par deux, sans descendre sous la
+ * capacité initiale ;
+ * - resize(int) permet à un opérateur de fixer la capacité à chaud.
+ *
+ * La réallocation recopie les messages (dans l'ordre) sous le verrou :
+ * elle ne coûte qu'une section critique un peu plus longue, put / get
+ * concurrents attendent simplement le verrou puis reprennent. Les
+ * producteurs bloqués sont réveillés après une croissance.
+ *
+ * La terminaison suit le contrat buffer-centré de la v4 :
+ * setProducersCount(n), producerDone(), isClosed(), et get() renvoie
+ * null lorsque le buffer est fermé et vide.
+ */
+public class ElasticProdConsBuffer implements IProdConsBuffer {
+
+    /**
+     * Nombre de put() trouvant le buffer plein avant de grandir.
+     */
+    private static final int GROW_AFTER = 4;
+
+    /**
+     * Nombre de tours de buffer à faible occupation avant de rétrécir.
+     */
+    private static final int SHRINK_AFTER_ROUNDS = 4;
+
+    /**
+     * Buffer circulaire, réalloué par resizeTo (protégé par lock).
+     */
+    private Message[] buf;
+
+    private int in = 0;
+    private int out = 0;
+
+    /**
+     * Nombre de messages présents. Volatile : relu sans verrou par la
+     * WaitStrategy.
+     */
+    private volatile int count = 0;
+
+    /**
+     * Capacité courante (buf.length), relue sans verrou par la
+     * WaitStrategy et par capacity().
+     */
+    private volatile int capacity;
+
+    /**
+     * Capacité plancher des réductions automatiques.
+     */
+    private final int minCapacity;
+
+    /**
+     * Capacité maximale (croissance automatique et resize).
+     */
+    private final int maxCapacity;
+
+    /**
+     * Nombre de put() ayant trouvé le buffer plein depuis la dernière
+     * réallocation ou période de faible occupation.
+     */
+    private int fullHits = 0;
+
+    /**
+     * Nombre de get() consécutifs laissant le buffer occupé à moins d'un
+     * quart.
+     */
+    private int lowOps = 0;
+
+    /**
+     * Capacité et nmsg de la dernière réallocation, à journaliser après
+     * la libération du verrou (0 = rien à journaliser).
+     */
+    private int resizedTo = 0;
+    private int resizedCount = 0;
+
+    private int totalProduced = 0;
+    private int producersRemaining = 0;
+    private volatile boolean closed = false;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+
+    private final WaitStrategy waitStrategy;
+    private final BooleanSupplier hasRoom;
+    private final BooleanSupplier hasMessageOrClosed;
+
+    /**
+     * Construit un tampon élastique avec attente bloquante.
+     *
+     * @param initialCapacity capacité de départ, et plancher des réductions
+     *                        automatiques (strictement positive)
+     * @param maxCapacity     capacité maximale (≥ initialCapacity)
+     */
+    public ElasticProdConsBuffer(int initialCapacity, int maxCapacity) {
+        this(initialCapacity, maxCapacity, WaitStrategy.blocking());
+    }
+
+    /**
+     * Construit un tampon élastique avec une stratégie d'attente.
+     *
+     * @param initialCapacity capacité de départ, et plancher des réductions
+     *                        automatiques (strictement positive)
+     * @param maxCapacity     capacité maximale (≥ initialCapacity)
+     * @param waitStrategy    stratégie d'attente lorsque le buffer est
+     *                        plein / vide
+     */
+    public ElasticProdConsBuffer(int initialCapacity, int maxCapacity, WaitStrategy waitStrategy) {
+        if (initialCapacity <= 0)
+            throw new IllegalArgumentException("capacity <= 0");
+        if (maxCapacity < initialCapacity)
+            throw new IllegalArgumentException("maxCapacity < capacity");
+        if (waitStrategy == null)
+            throw new NullPointerException("waitStrategy == null");
+        this.buf = new Message[initialCapacity];
+        this.capacity = initialCapacity;
+        this.minCapacity = initialCapacity;
+        this.maxCapacity = maxCapacity;
+        this.waitStrategy = waitStrategy;
+        this.hasRoom = () -> count < capacity;
+        this.hasMessageOrClosed = () -> count > 0 || closed;
+    }
+
+    @Override
+    public void setProducersCount(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n < 0");
+        lock.lock();
+        try {
+            this.producersRemaining = n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void producerDone() {
+        lock.lock();
+        try {
+            if (producersRemaining > 0) {
+                producersRemaining--;
+                if (producersRemaining == 0) {
+                    closed = true;
+                    notEmpty.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Insère un message ; un buffer plein grandit s'il en a encore le droit,
+     * sinon le producteur attend.
+     */
+    @Override
+    public void put(Message m) throws InterruptedException {
+        lock.lock();
+        try {
+            while (count == buf.length) {
+                if (!growOnFull())
+                    waitStrategy.await(lock, notFull, hasRoom);
+            }
+            enqueue(m);
+        } finally {
+            unlockAndLog();
+        }
+    }
+
+    @Override
+    public Message get() throws InterruptedException {
+        lock.lock();
+        try {
+            while (count == 0 && !closed) {
+                waitStrategy.await(lock, notEmpty, hasMessageOrClosed);
+            }
+            if (count == 0)
+                return null;
+            return dequeue();
+        } finally {
+            unlockAndLog();
+        }
+    }
+
+    @Override
+    public boolean tryPut(Message m) {
+        lock.lock();
+        try {
+            if (count == buf.length && !growOnFull())
+                return false;
+            enqueue(m);
+            return true;
+        } finally {
+            unlockAndLog();
+        }
+    }
+
+    @Override
+    public boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == buf.length) {
+                if (growOnFull())
+                    continue;
+                if (nanos <= 0)
+                    return false;
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(m);
+            return true;
+        } finally {
+            unlockAndLog();
+        }
+    }
+
+    @Override
+    public Message tryGet() {
+        lock.lock();
+        try {
+            if (count == 0)
+                return null;
+            return dequeue();
+        } finally {
+            unlockAndLog();
+        }
+    }
+
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0 && !closed) {
+                if (nanos <= 0)
+                    return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            if (count == 0)
+                return null;
+            return dequeue();
+        } finally {
+            unlockAndLog();
+        }
+    }
+
+    /**
+     * Fixe la capacité à chaud. Les messages présents sont conservés dans
+     * l'ordre ; les producteurs bloqués sont réveillés si la capacité
+     * augmente. Les ajustements automatiques reprennent ensuite à partir
+     * de cette capacité.
+     *
+     * @param newCapacity nouvelle capacité
+     * @throws IllegalArgumentException si newCapacity est nulle ou négative,
+     *                                  inférieure au nombre de messages
+     *                                  présents, ou supérieure à
+     *                                  maxCapacity()
+     */
+    public void resize(int newCapacity) {
+        lock.lock();
+        try {
+            if (newCapacity <= 0)
+                throw new IllegalArgumentException("capacity <= 0");
+            if (newCapacity < count)
+                throw new IllegalArgumentException("capacity < nmsg (" + count + ")");
+            if (newCapacity > maxCapacity)
+                throw new IllegalArgumentException("capacity > maxCapacity (" + maxCapacity + ")");
+            resizeTo(newCapacity);
+        } finally {
+            unlockAndLog();
+        }
+    }
+
+    /**
+     * @return capacité courante du buffer
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return capacité maximale autorisée
+     */
+    public int maxCapacity() {
+        return maxCapacity;
+    }
+
+    /**
+     * Enregistre un put() trouvant le buffer plein (verrou tenu) et double
+     * la capacité après GROW_AFTER occurrences.
+     *
+     * @return true si le buffer a grandi (il a donc de la place)
+     */
+    private boolean growOnFull() {
+        if (buf.length >= maxCapacity || ++fullHits < GROW_AFTER)
+            return false;
+        resizeTo((int) Math.min((long) buf.length * 2, maxCapacity));
+        return true;
+    }
+
+    /**
+     * Recopie les messages dans un buffer de taille newCapacity, à partir
+     * de la case 0 (verrou tenu, count ≤ newCapacity).
+     */
+    private void resizeTo(int newCapacity) {
+        if (newCapacity == buf.length)
+            return;
+        Message[] nb = new Message[newCapacity];
+        for (int i = 0; i < count; i++)
+            nb[i] = buf[(out + i) % buf.length];
+        boolean grown = newCapacity > buf.length;
+        buf = nb;
+        out = 0;
+        in = count % newCapacity;
+        capacity = newCapacity;
+        fullHits = 0;
+        lowOps = 0;
+        if (grown)
+            notFull.signalAll();
+        resizedTo = newCapacity;
+        resizedCount = count;
+    }
+
+    /**
+     * Libère le verrou, puis journalise la réallocation éventuellement
+     * faite pendant l'opération : l'écriture sur la console ne se fait pas
+     * en section critique.
+     */
+    private void unlockAndLog() {
+        int c = resizedTo;
+        int n = resizedCount;
+        resizedTo = 0;
+        lock.unlock();
+        if (c > 0)
+            Log.info("ElasticProdConsBuffer : capacité %d (nmsg=%d)", c, n);
+    }
+
+    private void enqueue(Message m) {
+        buf[in] = m;
+        in = (in + 1) % buf.length;
+        count++;
+        totalProduced++;
+        notEmpty.signal();
+    }
+
+    private Message dequeue() {
+        Message m = buf[out];
+        buf[out] = null;
+        out = (out + 1) % buf.length;
+        count--;
+
+        // Occupation faible prolongée : on rend la moitié du buffer.
+        if (count < buf.length / 4) {
+            fullHits = 0;
+            if (buf.length > minCapacity && ++lowOps >= buf.length * SHRINK_AFTER_ROUNDS)
+                resizeTo(Math.max(minCapacity, buf.length / 2));
+        } else {
+            lowOps = 0;
+        }
+
+        notFull.signal();
+        return m;
+    }
+
+    @Override
+    public int nmsg() {
+        return count;
+    }
+
+    @Override
+    public int totmsg() {
+        lock.lock();
+        try {
+            return totalProduced;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,462 @@
+package prodcons.v4;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tampon borné à messages périssables pour la version v4.
+ *
+ * Un message a une échéance (Message.expiresAt, ou la durée de vie par
+ * défaut du tampon s'il n'en a pas) ; un message périmé n'est jamais rendu
+ * aux consommateurs : il est retiré et compté dans expired().
+ *
+ * Deux mécanismes complémentaires :
+ * - vérification paresseuse au retrait : get() écarte les messages de tête
+ * périmés avant de rendre le premier message encore valide,
+ * - expiration proactive par une roue temporelle hachée (hashed timing
+ * wheel) : chaque message à échéance est rangé dans la case
+ * (tick d'échéance mod WHEEL_SIZE) ; à chaque opération, la roue avance
+ * jusqu'au tick courant et retire les messages échus des cases parcourues.
+ * Insertion et retrait coûtent O(1), sans minuterie par message ni thread
+ * supplémentaire.
+ *
+ * Les messages forment une liste doublement chaînée (ordre FIFO) pour
+ * qu'un message expiré au milieu du tampon libère sa place immédiatement.
+ * Un producteur bloqué sur un tampon plein se réveille au moins à chaque
+ * tick tant que des messages peuvent expirer.
+ *
+ * La terminaison suit le contrat buffer-centré de la v4 :
+ * setProducersCount(n), producerDone(), isClosed(), et get() renvoie
+ * null lorsque le buffer est fermé et vide (messages expirés compris).
+ */
+public class ExpiringProdConsBuffer implements IProdConsBuffer {
+
+    /**
+     * Nombre de cases de la roue (puissance de 2).
+     */
+    private static final int WHEEL_SIZE = 512;
+
+    /**
+     * Durée d'un tick par défaut (1 ms).
+     */
+    private static final long DEFAULT_TICK_NANOS = 1_000_000L;
+
+    /**
+     * Message stocké, chaîné dans la file FIFO et, s'il a une échéance,
+     * dans une case de la roue.
+     */
+    private static final class Node {
+        final Message msg;
+        final long expiresAt;
+
+        /**
+         * Tick à partir duquel le message est échu (-1 = hors roue).
+         */
+        long tick = -1;
+
+        Node prev, next;
+        Node wPrev, wNext;
+
+        Node(Message msg, long expiresAt) {
+            this.msg = msg;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int capacity;
+
+    /**
+     * Tête (plus ancien) et queue de la file FIFO.
+     */
+    private Node head, tail;
+
+    /**
+     * Roue temporelle : tête de la liste de chaque case.
+     */
+    private final Node[] wheel = new Node[WHEEL_SIZE];
+
+    /**
+     * Durée d'un tick, et origine des ticks (System.nanoTime()).
+     */
+    private final long tickNanos;
+    private final long origin;
+
+    /**
+     * Dernier tick traité par advance().
+     */
+    private long currentTick = 0;
+
+    /**
+     * Nombre de messages rangés dans la roue.
+     */
+    private int inWheel = 0;
+
+    /**
+     * Durée de vie appliquée aux messages sans échéance (0 = aucune).
+     */
+    private final long defaultTtlNanos;
+
+    private volatile int count = 0;
+    private int totalProduced = 0;
+    private int expired = 0;
+    private int producersRemaining = 0;
+    private volatile boolean closed = false;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * Construit un tampon où seuls les messages munis d'une échéance
+     * expirent.
+     *
+     * @param capacity taille maximale du buffer (strictement positive)
+     */
+    public ExpiringProdConsBuffer(int capacity) {
+        this(capacity, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Construit un tampon avec une durée de vie par défaut.
+     *
+     * @param capacity   taille maximale du buffer (strictement positive)
+     * @param defaultTtl durée de vie des messages sans échéance (0 = aucune)
+     * @param unit       unité de defaultTtl
+     */
+    public ExpiringProdConsBuffer(int capacity, long defaultTtl, TimeUnit unit) {
+        this(capacity, unit.toNanos(defaultTtl), DEFAULT_TICK_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Construit un tampon avec une durée de vie par défaut et une
+     * résolution de roue donnée.
+     *
+     * @param capacity   taille maximale du buffer (strictement positive)
+     * @param defaultTtl durée de vie des messages sans échéance (0 = aucune)
+     * @param tick       durée d'un tick de la roue (strictement positive) ;
+     *                   un message expire au plus un tick après son échéance
+     *                   (vérification au retrait exceptée)
+     * @param unit       unité de defaultTtl et tick
+     */
+    public ExpiringProdConsBuffer(int capacity, long defaultTtl, long tick, TimeUnit unit) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity <= 0");
+        if (defaultTtl < 0)
+            throw new IllegalArgumentException("defaultTtl < 0");
+        if (tick <= 0)
+            throw new IllegalArgumentException("tick <= 0");
+        this.capacity = capacity;
+        this.defaultTtlNanos = unit.toNanos(defaultTtl);
+        this.tickNanos = Math.max(1, unit.toNanos(tick));
+        this.origin = System.nanoTime();
+    }
+
+    @Override
+    public void setProducersCount(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n < 0");
+        lock.lock();
+        try {
+            this.producersRemaining = n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void producerDone() {
+        lock.lock();
+        try {
+            if (producersRemaining > 0) {
+                producersRemaining--;
+                if (producersRemaining == 0) {
+                    closed = true;
+                    notEmpty.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void put(Message m) throws InterruptedException {
+        lock.lock();
+        try {
+            while (!hasRoom()) {
+                // Des messages peuvent expirer : on revient au tick suivant.
+                if (inWheel > 0)
+                    notFull.awaitNanos(tickNanos);
+                else
+                    notFull.await();
+            }
+            enqueue(m);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message get() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                Message m = dequeue();
+                if (m != null)
+                    return m;
+                if (closed)
+                    return null;
+                notEmpty.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean tryPut(Message m) {
+        lock.lock();
+        try {
+            if (!hasRoom())
+                return false;
+            enqueue(m);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (!hasRoom()) {
+                if (nanos <= 0)
+                    return false;
+                long wait = inWheel > 0 ? Math.min(nanos, tickNanos) : nanos;
+                nanos -= wait - notFull.awaitNanos(wait);
+            }
+            enqueue(m);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message tryGet() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                Message m = dequeue();
+                if (m != null || closed || nanos <= 0)
+                    return m;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retire tout de suite les messages échus (sans attendre une opération).
+     *
+     * @return nombre de messages retirés par cet appel
+     */
+    public int expireNow() {
+        lock.lock();
+        try {
+            int before = expired;
+            advance(System.nanoTime());
+            return expired - before;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return nombre total de messages retirés parce que périmés
+     */
+    public int expired() {
+        lock.lock();
+        try {
+            return expired;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fait avancer la roue puis indique s'il reste de la place (verrou tenu).
+     */
+    private boolean hasRoom() {
+        if (count < capacity)
+            return true;
+        advance(System.nanoTime());
+        return count < capacity;
+    }
+
+    /**
+     * Insère m en queue de file, et dans la roue s'il a une échéance
+     * (verrou tenu, buffer non plein).
+     */
+    private void enqueue(Message m) {
+        long now = System.nanoTime();
+        long deadline = m.expiresAt;
+        if (deadline == Message.NO_EXPIRY && defaultTtlNanos > 0)
+            deadline = now + defaultTtlNanos;
+        Node n = new Node(m, deadline);
+
+        n.prev = tail;
+        if (tail == null)
+            head = n;
+        else
+            tail.next = n;
+        tail = n;
+        count++;
+        totalProduced++;
+
+        if (deadline != Message.NO_EXPIRY) {
+            // Au plus tôt au tick suivant : le tick courant est déjà traité.
+            long t = Math.max(ceilTick(deadline), currentTick + 1);
+            n.tick = t;
+            int b = (int) (t & (WHEEL_SIZE - 1));
+            n.wNext = wheel[b];
+            if (wheel[b] != null)
+                wheel[b].wPrev = n;
+            wheel[b] = n;
+            inWheel++;
+        }
+        notEmpty.signal();
+    }
+
+    /**
+     * Retire le premier message encore valide (verrou tenu) en écartant au
+     * passage les messages de tête périmés.
+     *
+     * @return le message, ou null si aucun message valide n'est présent
+     */
+    private Message dequeue() {
+        if (head == null)
+            return null;
+        long now = System.nanoTime();
+        advance(now);
+        while (head != null) {
+            Node n = head;
+            unlink(n);
+            if (n.expiresAt != Message.NO_EXPIRY && now - n.expiresAt >= 0) {
+                expired++;
+                continue;
+            }
+            return n.msg;
+        }
+        return null;
+    }
+
+    /**
+     * Avance la roue jusqu'au tick de now en retirant les messages échus
+     * des cases parcourues (verrou tenu). Au plus WHEEL_SIZE cases sont
+     * parcourues, ce qui couvre toute la roue.
+     */
+    private void advance(long now) {
+        long nowTick = (now - origin) / tickNanos;
+        if (nowTick <= currentTick)
+            return;
+        if (inWheel == 0) {
+            currentTick = nowTick;
+            return;
+        }
+        long from = Math.max(currentTick + 1, nowTick - WHEEL_SIZE + 1);
+        for (long t = from; t <= nowTick && inWheel > 0; t++) {
+            Node n = wheel[(int) (t & (WHEEL_SIZE - 1))];
+            while (n != null) {
+                Node nx = n.wNext;
+                // Les messages des tours suivants restent dans la case.
+                if (n.tick <= nowTick) {
+                    unlink(n);
+                    expired++;
+                }
+                n = nx;
+            }
+        }
+        currentTick = nowTick;
+    }
+
+    /**
+     * Retire n de la file et de la roue (verrou tenu) et libère sa place.
+     */
+    private void unlink(Node n) {
+        if (n.prev == null)
+            head = n.next;
+        else
+            n.prev.next = n.next;
+        if (n.next == null)
+            tail = n.prev;
+        else
+            n.next.prev = n.prev;
+        n.prev = n.next = null;
+
+        if (n.tick >= 0) {
+            int b = (int) (n.tick & (WHEEL_SIZE - 1));
+            if (n.wPrev == null)
+                wheel[b] = n.wNext;
+            else
+                n.wPrev.wNext = n.wNext;
+            if (n.wNext != null)
+                n.wNext.wPrev = n.wPrev;
+            n.wPrev = n.wNext = null;
+            n.tick = -1;
+            inWheel--;
+        }
+
+        count--;
+        notFull.signal();
+    }
+
+    /**
+     * Premier tick dont le début est postérieur ou égal à deadline.
+     */
+    private long ceilTick(long deadline) {
+        long d = deadline - origin;
+        if (d <= 0)
+            return 0;
+        return (d + tickNanos - 1) / tickNanos;
+    }
+
+    /**
+     * Nombre de messages présents (les messages périmés non encore retirés
+     * par la roue en font partie).
+     */
+    @Override
+    public int nmsg() {
+        return count;
+    }
+
+    @Override
+    public int totmsg() {
+        lock.lock();
+        try {
+            return totalProduced;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package prodcons.v4;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Buffer partagé entre producteurs et consommateurs.
  * Cette interface représente la vue abstraite du tampon :
@@ -41,6 +43,45 @@ public interface IProdConsBuffer {
      */
     Message get() throws InterruptedException;
 
+    /**
+     * Insère un message sans attendre.
+     *
+     * @param m message à ajouter
+     * @return true si le message a été inséré, false si le tampon est plein
+     */
+    boolean tryPut(Message m);
+
+    /**
+     * Insère un message en attendant au plus timeout qu'une place se libère.
+     *
+     * @param m       message à ajouter
+     * @param timeout délai maximal d'attente
+     * @param unit    unité de timeout
+     * @return true si le message a été inséré, false si le délai a expiré
+     * @throws InterruptedException si le thread est interrompu pendant l'attente
+     */
+    boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Retire un message sans attendre.
+     *
+     * @return le message retiré, ou null si le tampon est vide
+     *         (isClosed() distingue un tampon momentanément vide d'un
+     *         tampon terminé)
+     */
+    Message tryGet();
+
+    /**
+     * Retire un message en attendant au plus timeout qu'un message arrive.
+     *
+     * @param timeout délai maximal d'attente
+     * @param unit    unité de timeout
+     * @return le message retiré, ou null si le délai a expiré ou si le
+     *         tampon est fermé et vide
+     * @throws InterruptedException si le thread est interrompu pendant l'attente
+     */
+    Message poll(long timeout, TimeUnit unit) throws InterruptedException;
+
     /**
      * @return nombre de messages actuellement stockés dans le buffer
      */
@@ -50,4 +91,23 @@ public interface IProdConsBuffer {
      * @return nombre total de messages produits depuis le démarrage
      */
     int totmsg(); // nombre total produits depuis le début
+
+    /**
+     * Informe le buffer du nombre total de producteurs attendus.
+     *
+     * @param n nombre de producteurs (positif ou nul)
+     */
+    void setProducersCount(int n);
+
+    /**
+     * Appelée par chaque producteur (en finally) lorsqu'il a terminé.
+     * Quand le dernier producteur a signalé sa fin, le buffer est fermé
+     * et les consommateurs bloqués sont réveillés.
+     */
+    void producerDone();
+
+    /**
+     * @return true si tous les producteurs ont signalé leur fin
+     */
+    boolean isClosed();
 }
@@ -0,0 +1,394 @@
+package prodcons.v4;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tampon borné sans verrou (MPMC) pour la version v4.
+ *
+ * Principe (file bornée à numéros de séquence) :
+ * - chaque case i du tableau possède un numéro de séquence seq[i],
+ * - tail (prochaine écriture) et head (prochaine lecture) sont des compteurs
+ * 64 bits qui ne font qu'augmenter ; la case visée est pos % capacité,
+ * - un producteur peut écrire à la position pos lorsque seq[i] == pos,
+ * il réserve la position par CAS sur tail, écrit le message puis publie
+ * seq[i] = pos + 1,
+ * - un consommateur peut lire la position pos lorsque seq[i] == pos + 1,
+ * il réserve la position par CAS sur head, lit le message puis libère la
+ * case pour le tour suivant avec seq[i] = pos + capacité.
+ *
+ * put/get ne prennent donc jamais de verrou sur le chemin rapide.
+ * Lorsque le tampon est réellement plein (ou vide), le thread tourne
+ * brièvement (SPIN_TRIES) puis s'endort sur une condition. Le verrou
+ * parkLock ne sert qu'à cet endormissement : le côté opposé ne le prend
+ * que si un thread est effectivement en attente (compteurs *Waiting).
+ *
+ * tryPut / tryGet se limitent au chemin rapide ; offer / poll suivent le
+ * même schéma que put / get avec un endormissement borné par le délai.
+ *
+ * La terminaison suit le contrat buffer-centré de la v4 :
+ * setProducersCount(n), producerDone(), isClosed(), et get() renvoie
+ * null lorsque le buffer est fermé et vide.
+ */
+public class LockFreeProdConsBuffer implements IProdConsBuffer {
+
+    /**
+     * Nombre de tentatives actives (Thread.onSpinWait) avant de s'endormir.
+     */
+    private static final int SPIN_TRIES = 64;
+
+    /**
+     * Stockage des messages. Les accès sont ordonnés par seq : l'écriture
+     * de buf[i] précède la publication de seq[i], la lecture la suit.
+     */
+    private final Message[] buf;
+
+    /**
+     * Numéro de séquence de chaque case (voir description de la classe).
+     */
+    private final AtomicLongArray seq;
+
+    /**
+     * Capacité du tampon (buf.length).
+     */
+    private final int capacity;
+
+    /**
+     * Position de la prochaine écriture (nombre de positions réservées par
+     * les producteurs depuis le début).
+     */
+    private final AtomicLong tail = new AtomicLong(0);
+
+    /**
+     * Position de la prochaine lecture.
+     */
+    private final AtomicLong head = new AtomicLong(0);
+
+    /**
+     * Nombre de producteurs n'ayant pas encore signalé leur fin.
+     */
+    private final AtomicInteger producersRemaining = new AtomicInteger(0);
+
+    /**
+     * Vrai lorsque tous les producteurs ont appelé producerDone().
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Nombre de producteurs endormis sur notFull.
+     */
+    private final AtomicInteger producersWaiting = new AtomicInteger(0);
+
+    /**
+     * Nombre de consommateurs endormis sur notEmpty.
+     */
+    private final AtomicInteger consumersWaiting = new AtomicInteger(0);
+
+    /**
+     * Verrou utilisé uniquement pour endormir / réveiller les threads
+     * (jamais sur le chemin rapide).
+     */
+    private final ReentrantLock parkLock = new ReentrantLock();
+
+    /**
+     * Condition "au moins une case libre".
+     */
+    private final Condition notFull = parkLock.newCondition();
+
+    /**
+     * Condition "au moins un message publié, ou buffer fermé".
+     */
+    private final Condition notEmpty = parkLock.newCondition();
+
+    /**
+     * Construit un tampon sans verrou de capacité donnée.
+     *
+     * @param capacity taille maximale du buffer (strictement positive)
+     */
+    public LockFreeProdConsBuffer(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity <= 0");
+        this.capacity = capacity;
+        this.buf = new Message[capacity];
+        this.seq = new AtomicLongArray(capacity);
+        // Au départ, la case i attend l'écriture de la position i.
+        for (int i = 0; i < capacity; i++)
+            seq.set(i, i);
+    }
+
+    @Override
+    public void setProducersCount(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n < 0");
+        producersRemaining.set(n);
+    }
+
+    @Override
+    public void producerDone() {
+        while (true) {
+            int r = producersRemaining.get();
+            if (r == 0)
+                return;
+            if (producersRemaining.compareAndSet(r, r - 1)) {
+                if (r == 1) {
+                    closed = true;
+                    // Un consommateur qui s'endort teste closed en tenant
+                    // parkLock : en le prenant ici on est sûr de le réveiller.
+                    parkLock.lock();
+                    try {
+                        notEmpty.signalAll();
+                    } finally {
+                        parkLock.unlock();
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Insère un message : chemin rapide par CAS, puis attente active
+     * courte, puis endormissement si le tampon reste plein.
+     */
+    @Override
+    public void put(Message m) throws InterruptedException {
+        int spins = 0;
+        while (!tryEnqueue(m)) {
+            if (spins++ < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                awaitNotFull(Long.MAX_VALUE);
+                spins = 0;
+            }
+        }
+        // Un consommateur est peut-être endormi : on le réveille.
+        if (consumersWaiting.get() > 0)
+            signal(notEmpty);
+    }
+
+    /**
+     * Retire un message, ou renvoie null si le buffer est fermé et vide.
+     */
+    @Override
+    public Message get() throws InterruptedException {
+        int spins = 0;
+        while (true) {
+            Message m = tryDequeue();
+            if (m != null) {
+                if (producersWaiting.get() > 0)
+                    signal(notFull);
+                return m;
+            }
+            if (closed) {
+                // Tous les put() sont terminés avant la fermeture :
+                // un dernier essai suffit à voir les derniers messages.
+                m = tryDequeue();
+                if (m != null && producersWaiting.get() > 0)
+                    signal(notFull);
+                return m;
+            }
+            if (spins++ < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                awaitNotEmpty(Long.MAX_VALUE);
+                spins = 0;
+            }
+        }
+    }
+
+    @Override
+    public boolean tryPut(Message m) {
+        if (!tryEnqueue(m))
+            return false;
+        if (consumersWaiting.get() > 0)
+            signal(notEmpty);
+        return true;
+    }
+
+    /**
+     * Comme put(), mais abandonne lorsque le délai est écoulé.
+     */
+    @Override
+    public boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int spins = 0;
+        while (!tryEnqueue(m)) {
+            long nanos = deadline - System.nanoTime();
+            if (nanos <= 0)
+                return false;
+            if (spins++ < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                awaitNotFull(nanos);
+                spins = 0;
+            }
+        }
+        if (consumersWaiting.get() > 0)
+            signal(notEmpty);
+        return true;
+    }
+
+    @Override
+    public Message tryGet() {
+        Message m = tryDequeue();
+        if (m != null && producersWaiting.get() > 0)
+            signal(notFull);
+        return m;
+    }
+
+    /**
+     * Comme get(), mais renvoie null lorsque le délai est écoulé.
+     */
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int spins = 0;
+        while (true) {
+            Message m = tryGet();
+            if (m != null || closed) {
+                // Même raisonnement que get() : un dernier essai après closed.
+                return m != null ? m : tryGet();
+            }
+            long nanos = deadline - System.nanoTime();
+            if (nanos <= 0)
+                return null;
+            if (spins++ < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                awaitNotEmpty(nanos);
+                spins = 0;
+            }
+        }
+    }
+
+    @Override
+    public int nmsg() {
+        long h = head.get();
+        long t = tail.get();
+        return (int) Math.max(0, Math.min(capacity, t - h));
+    }
+
+    @Override
+    public int totmsg() {
+        return (int) tail.get();
+    }
+
+    /**
+     * Tentative d'insertion sans blocage.
+     *
+     * @return false si le tampon est plein
+     */
+    private boolean tryEnqueue(Message m) {
+        long pos = tail.get();
+        while (true) {
+            int i = (int) (pos % capacity);
+            long dif = seq.get(i) - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buf[i] = m;
+                    // Écriture volatile : publie le message aux consommateurs.
+                    seq.set(i, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (dif < 0) {
+                // La case n'a pas encore été libérée : tampon plein.
+                return false;
+            } else {
+                // Un autre producteur a réservé cette position.
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Tentative de retrait sans blocage.
+     *
+     * @return le message, ou null si aucun message n'est publié
+     */
+    private Message tryDequeue() {
+        long pos = head.get();
+        while (true) {
+            int i = (int) (pos % capacity);
+            long dif = seq.get(i) - (pos + 1);
+            if (dif == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    Message m = buf[i];
+                    buf[i] = null;
+                    // Libère la case pour le tour suivant des producteurs.
+                    seq.set(i, pos + capacity);
+                    return m;
+                }
+                pos = head.get();
+            } else if (dif < 0) {
+                // Rien de publié à cette position : tampon vide.
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * Endort le producteur (au plus nanos) tant que la case visée par tail
+     * n'est pas libre.
+     * Le compteur est incrémenté avant le dernier test, et les consommateurs
+     * le lisent après avoir libéré une case : pas de réveil perdu.
+     */
+    private void awaitNotFull(long nanos) throws InterruptedException {
+        parkLock.lock();
+        try {
+            producersWaiting.incrementAndGet();
+            try {
+                long pos = tail.get();
+                if (seq.get((int) (pos % capacity)) < pos)
+                    notFull.awaitNanos(nanos);
+            } finally {
+                producersWaiting.decrementAndGet();
+            }
+        } finally {
+            parkLock.unlock();
+        }
+    }
+
+    /**
+     * Endort le consommateur (au plus nanos) tant qu'aucun message n'est
+     * publié et que le buffer n'est pas fermé.
+     */
+    private void awaitNotEmpty(long nanos) throws InterruptedException {
+        parkLock.lock();
+        try {
+            consumersWaiting.incrementAndGet();
+            try {
+                long pos = head.get();
+                if (seq.get((int) (pos % capacity)) < pos + 1 && !closed)
+                    notEmpty.awaitNanos(nanos);
+            } finally {
+                consumersWaiting.decrementAndGet();
+            }
+        } finally {
+            parkLock.unlock();
+        }
+    }
+
+    /**
+     * Réveille un thread endormi sur la condition donnée.
+     */
+    private void signal(Condition c) {
+        parkLock.lock();
+        try {
+            c.signal();
+        } finally {
+            parkLock.unlock();
+        }
+    }
+}
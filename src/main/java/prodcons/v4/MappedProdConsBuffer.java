@@ -0,0 +1,474 @@
+package prodcons.v4;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tampon borné persistant, adossé à un fichier projeté en mémoire
+ * (FileChannel.map), pour la version v4.
+ *
+ * Le contenu du tampon et ses compteurs survivent à un redémarrage de la
+ * JVM : une nouvelle instance construite sur le même fichier reprend à la
+ * dernière position consommée.
+ *
+ * Format du fichier (ordre d'octets natif) :
+ * - en-tête de HEADER_SIZE octets :
+ * [0] MAGIC (int), [4] VERSION (int), [8] capacité (int),
+ * [16] in (long), [24] out (long) ;
+ * in et out sont des positions croissantes (jamais remises à zéro) :
+ * le nombre de messages est in - out et le total produit est in,
+ * - puis capacité enregistrements de RECORD_SIZE octets :
+ * [0] id (int), [8] producerTid (long), à l'offset HEADER_SIZE + i * 16.
+ *
+ * Cohérence : put() écrit l'enregistrement avant d'avancer in, get() lit
+ * l'enregistrement avant d'avancer out. Un arrêt brutal entre les deux perd
+ * au pire le message en cours d'écriture, ou le fait relivrer au redémarrage
+ * (livraison "au moins une fois").
+ *
+ * Durabilité : les écritures vont dans le cache de pages de l'OS (elles
+ * survivent à un crash de la JVM). Pour survivre à un crash de la machine,
+ * le fichier est forcé sur disque (MappedByteBuffer.force) toutes les
+ * syncEvery opérations, hors verrou : 0 = jamais (laissé à l'OS),
+ * 1 = à chaque opération, N = par lots de N opérations. close() force
+ * toujours une dernière fois.
+ *
+ * La fermeture de production (producersRemaining, closed) n'est pas
+ * persistée : elle concerne l'exécution en cours.
+ *
+ * Exclusivité : le fichier est verrouillé (FileLock) de la construction à
+ * close() ; une seconde instance sur le même fichier, dans cette JVM ou
+ * une autre, échoue au lieu de corrompre l'anneau.
+ *
+ * tryPut / tryGet n'attendent jamais ; offer / poll attendent au plus le
+ * délai fourni. Toutes les opérations qui modifient le tampon comptent pour
+ * syncEvery.
+ */
+public class MappedProdConsBuffer implements IProdConsBuffer, AutoCloseable {
+
+    private static final int MAGIC = 0x50434246; // "PCBF"
+    private static final int VERSION = 1;
+
+    /**
+     * Taille de l'en-tête en octets.
+     */
+    public static final int HEADER_SIZE = 64;
+
+    /**
+     * Taille d'un enregistrement en octets.
+     */
+    public static final int RECORD_SIZE = 16;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int IN_OFFSET = 16;
+    private static final int OUT_OFFSET = 24;
+
+    /**
+     * Fichier projeté en mémoire (en-tête + enregistrements).
+     */
+    private final MappedByteBuffer mem;
+
+    /**
+     * Canal gardé ouvert jusqu'à close() : il détient le verrou exclusif
+     * sur le fichier.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Capacité en nombre de messages.
+     */
+    private final int capacity;
+
+    /**
+     * Nombre d'opérations entre deux force() (0 = jamais).
+     */
+    private final int syncEvery;
+
+    /**
+     * Position de la prochaine écriture (copie de l'en-tête).
+     */
+    private long in;
+
+    /**
+     * Position de la prochaine lecture (copie de l'en-tête).
+     */
+    private long out;
+
+    /**
+     * Nombre de messages présents (in - out), volatile pour la WaitStrategy.
+     */
+    private volatile int count;
+
+    /**
+     * Opérations effectuées depuis le dernier force().
+     */
+    private int unsynced = 0;
+
+    /**
+     * Nombre de producteurs n'ayant pas encore signalé leur fin.
+     */
+    private int producersRemaining = 0;
+
+    /**
+     * Indique que tous les producteurs ont terminé.
+     */
+    private volatile boolean closed = false;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * Stratégie d'attente sur notFull / notEmpty.
+     */
+    private final WaitStrategy waitStrategy;
+    private final BooleanSupplier hasRoom;
+    private final BooleanSupplier hasMessageOrClosed;
+
+    /**
+     * Ouvre (ou crée) un tampon persistant avec attente bloquante.
+     *
+     * @see #MappedProdConsBuffer(Path, int, int, WaitStrategy)
+     */
+    public MappedProdConsBuffer(Path file, int capacity, int syncEvery) throws IOException {
+        this(file, capacity, syncEvery, WaitStrategy.blocking());
+    }
+
+    /**
+     * Ouvre (ou crée) un tampon persistant.
+     *
+     * Si le fichier existe et n'est pas vide, son en-tête est vérifié et les
+     * messages qu'il contient redeviennent disponibles.
+     *
+     * @param file         fichier de stockage
+     * @param capacity     nombre maximal de messages (doit correspondre à
+     *                     celui du fichier existant)
+     * @param syncEvery    nombre d'opérations entre deux force() (0 = jamais)
+     * @param waitStrategy stratégie d'attente lorsque le buffer est plein / vide
+     * @throws IOException si le fichier ne peut être ouvert, est déjà
+     *                     utilisé par un autre tampon, ou n'est pas un
+     *                     tampon compatible
+     */
+    public MappedProdConsBuffer(Path file, int capacity, int syncEvery, WaitStrategy waitStrategy)
+            throws IOException {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity <= 0");
+        if (capacity > (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE)
+            throw new IllegalArgumentException("capacity trop grande");
+        if (syncEvery < 0)
+            throw new IllegalArgumentException("syncEvery < 0");
+        if (waitStrategy == null)
+            throw new NullPointerException("waitStrategy == null");
+        this.capacity = capacity;
+        this.syncEvery = syncEvery;
+        this.waitStrategy = waitStrategy;
+        this.hasRoom = () -> count < this.capacity;
+        this.hasMessageOrClosed = () -> count > 0 || closed;
+
+        long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null)
+            Files.createDirectories(dir);
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock fl;
+            try {
+                fl = ch.tryLock();
+            } catch (OverlappingFileLockException e) {
+                fl = null; // déjà verrouillé dans cette JVM
+            }
+            if (fl == null)
+                throw new IOException(file + " : déjà utilisé par un autre tampon");
+            if (ch.size() != 0 && ch.size() != size)
+                throw new IOException(file + " : taille " + ch.size() + " incompatible avec capacity="
+                        + capacity);
+            this.mem = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            mem.order(ByteOrder.nativeOrder());
+
+            if (mem.getInt(MAGIC_OFFSET) == 0 && mem.getInt(CAPACITY_OFFSET) == 0) {
+                // Nouveau fichier : on écrit l'en-tête.
+                mem.putInt(VERSION_OFFSET, VERSION);
+                mem.putInt(CAPACITY_OFFSET, capacity);
+                mem.putLong(IN_OFFSET, 0);
+                mem.putLong(OUT_OFFSET, 0);
+                mem.putInt(MAGIC_OFFSET, MAGIC);
+                mem.force();
+            } else {
+                if (mem.getInt(MAGIC_OFFSET) != MAGIC || mem.getInt(VERSION_OFFSET) != VERSION)
+                    throw new IOException(file + " : en-tête invalide");
+                if (mem.getInt(CAPACITY_OFFSET) != capacity)
+                    throw new IOException(file + " : capacité " + mem.getInt(CAPACITY_OFFSET)
+                            + " != " + capacity);
+            }
+            this.in = mem.getLong(IN_OFFSET);
+            this.out = mem.getLong(OUT_OFFSET);
+            if (out < 0 || in < out || in - out > capacity)
+                throw new IOException(file + " : compteurs incohérents in=" + in + " out=" + out);
+        } catch (IOException | RuntimeException e) {
+            // Fermer le canal libère aussi le verrou éventuellement obtenu.
+            ch.close();
+            throw e;
+        }
+        this.channel = ch;
+        this.count = (int) (in - out);
+    }
+
+    @Override
+    public void setProducersCount(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n < 0");
+        lock.lock();
+        try {
+            this.producersRemaining = n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void producerDone() {
+        lock.lock();
+        try {
+            if (producersRemaining > 0) {
+                producersRemaining--;
+                if (producersRemaining == 0) {
+                    closed = true;
+                    notEmpty.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void put(Message m) throws InterruptedException {
+        boolean sync;
+        lock.lock();
+        try {
+            while (count == capacity) {
+                waitStrategy.await(lock, notFull, hasRoom);
+            }
+            enqueue(m);
+            sync = tick();
+        } finally {
+            lock.unlock();
+        }
+        if (sync)
+            mem.force();
+    }
+
+    @Override
+    public Message get() throws InterruptedException {
+        Message m;
+        boolean sync;
+        lock.lock();
+        try {
+            while (count == 0 && !closed) {
+                waitStrategy.await(lock, notEmpty, hasMessageOrClosed);
+            }
+            if (count == 0)
+                return null;
+            m = dequeue();
+            sync = tick();
+        } finally {
+            lock.unlock();
+        }
+        if (sync)
+            mem.force();
+        return m;
+    }
+
+    @Override
+    public boolean tryPut(Message m) {
+        boolean sync;
+        lock.lock();
+        try {
+            if (count == capacity)
+                return false;
+            enqueue(m);
+            sync = tick();
+        } finally {
+            lock.unlock();
+        }
+        if (sync)
+            mem.force();
+        return true;
+    }
+
+    @Override
+    public boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        boolean sync;
+        lock.lockInterruptibly();
+        try {
+            while (count == capacity) {
+                if (nanos <= 0)
+                    return false;
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(m);
+            sync = tick();
+        } finally {
+            lock.unlock();
+        }
+        if (sync)
+            mem.force();
+        return true;
+    }
+
+    @Override
+    public Message tryGet() {
+        Message m;
+        boolean sync;
+        lock.lock();
+        try {
+            if (count == 0)
+                return null;
+            m = dequeue();
+            sync = tick();
+        } finally {
+            lock.unlock();
+        }
+        if (sync)
+            mem.force();
+        return m;
+    }
+
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        Message m;
+        boolean sync;
+        lock.lockInterruptibly();
+        try {
+            while (count == 0 && !closed) {
+                if (nanos <= 0)
+                    return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            if (count == 0)
+                return null;
+            m = dequeue();
+            sync = tick();
+        } finally {
+            lock.unlock();
+        }
+        if (sync)
+            mem.force();
+        return m;
+    }
+
+    /**
+     * Écrit l'enregistrement puis avance in (verrou tenu, tampon non plein).
+     */
+    private void enqueue(Message m) {
+        int base = recordOffset(in);
+        mem.putInt(base, m.id);
+        mem.putLong(base + 8, m.producerTid);
+        // L'enregistrement est écrit avant d'avancer in.
+        in++;
+        mem.putLong(IN_OFFSET, in);
+        count++;
+        notEmpty.signal();
+    }
+
+    /**
+     * Lit l'enregistrement puis avance out (verrou tenu, tampon non vide).
+     */
+    private Message dequeue() {
+        int base = recordOffset(out);
+        Message m = new Message(mem.getInt(base), mem.getLong(base + 8));
+        out++;
+        mem.putLong(OUT_OFFSET, out);
+        count--;
+        notFull.signal();
+        return m;
+    }
+
+    /**
+     * Force immédiatement le contenu du tampon sur disque.
+     */
+    public void sync() {
+        lock.lock();
+        try {
+            unsynced = 0;
+        } finally {
+            lock.unlock();
+        }
+        mem.force();
+    }
+
+    /**
+     * Force le contenu sur disque et libère le verrou du fichier. La
+     * projection elle-même est libérée par le ramasse-miettes.
+     */
+    @Override
+    public void close() {
+        sync();
+        try {
+            // Fermer le canal libère aussi le verrou.
+            channel.close();
+        } catch (IOException e) {
+            Log.info("MappedProdConsBuffer : fermeture du fichier impossible (%s)", e);
+        }
+    }
+
+    @Override
+    public int nmsg() {
+        return count;
+    }
+
+    /**
+     * @return nombre total de messages produits, exécutions précédentes
+     *         comprises
+     */
+    @Override
+    public int totmsg() {
+        lock.lock();
+        try {
+            return (int) in;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Offset de l'enregistrement correspondant à une position.
+     */
+    private int recordOffset(long pos) {
+        return HEADER_SIZE + (int) (pos % capacity) * RECORD_SIZE;
+    }
+
+    /**
+     * Compte une opération (verrou tenu).
+     *
+     * @return true si l'appelant doit forcer le fichier sur disque
+     */
+    private boolean tick() {
+        if (syncEvery == 0)
+            return false;
+        if (++unsynced < syncEvery)
+            return false;
+        unsynced = 0;
+        return true;
+    }
+}
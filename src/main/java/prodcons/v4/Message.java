@@ -1,12 +1,18 @@
 package prodcons.v4;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Représente un message échangé entre producteurs et consommateurs.
  *
  * Un message contient :
  * - un identifiant logique (id) généralement unique dans l'exécution,
  * - l'identifiant du thread producteur qui l'a créé (producerTid),
- * ce qui permet de tracer quelle instance de Producer a généré ce message.
+ * ce qui permet de tracer quelle instance de Producer a généré ce message,
+ * - une échéance optionnelle (expiresAt, en System.nanoTime()) au-delà de
+ * laquelle le message est périmé ; seul ExpiringProdConsBuffer en tient
+ * compte, les autres tampons la ignorent (et les tampons qui stockent les
+ * champs en primitives ne la conservent pas).
  *
  * La méthode toString fournit une représentation compacte adaptée aux logs.
  */
@@ -25,11 +31,52 @@ public class Message {
     public final long producerTid;
 
     /**
-     * Construit un message avec un identifiant et l'id du thread producteur.
+     * Valeur de expiresAt pour un message sans échéance.
+     */
+    public static final long NO_EXPIRY = Long.MAX_VALUE;
+
+    /**
+     * Échéance du message (horloge System.nanoTime()), ou NO_EXPIRY.
+     */
+    public final long expiresAt;
+
+    /**
+     * Construit un message avec un identifiant et l'id du thread producteur,
+     * sans échéance.
      */
     public Message(int id, long producerTid) {
         this.id = id;
         this.producerTid = producerTid;
+        this.expiresAt = NO_EXPIRY;
+    }
+
+    /**
+     * Construit un message périmé au bout de ttl (à partir de maintenant).
+     *
+     * @param ttl  durée de vie du message (positive ou nulle)
+     * @param unit unité de ttl
+     */
+    public Message(int id, long producerTid, long ttl, TimeUnit unit) {
+        if (ttl < 0)
+            throw new IllegalArgumentException("ttl < 0");
+        this.id = id;
+        this.producerTid = producerTid;
+        this.expiresAt = System.nanoTime() + unit.toNanos(ttl);
+    }
+
+    /**
+     * @return true si le message a une échéance
+     */
+    public boolean hasExpiry() {
+        return expiresAt != NO_EXPIRY;
+    }
+
+    /**
+     * @param now date courante (System.nanoTime())
+     * @return true si le message a une échéance et qu'elle est dépassée
+     */
+    public boolean isExpired(long now) {
+        return expiresAt != NO_EXPIRY && now - expiresAt >= 0;
     }
 
     /**
@@ -0,0 +1,19 @@
+package prodcons.v4;
+
+/**
+ * Rappel de consommation utilisé par les tampons à stockage primitif.
+ *
+ * Le tampon passe directement les champs du message (id, producerTid) au
+ * lieu d'un objet Message : la consommation n'alloue rien.
+ */
+@FunctionalInterface
+public interface MessageHandler {
+
+    /**
+     * Traite un message retiré du tampon.
+     *
+     * @param id          identifiant logique du message
+     * @param producerTid identifiant du thread producteur
+     */
+    void onMessage(int id, long producerTid);
+}
@@ -0,0 +1,380 @@
+package prodcons.v4;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * Tampon partitionné par clé pour la version v4.
+ *
+ * Objectif : conserver l'ordre des messages d'une même clé (par défaut le
+ * producteur, Message.producerTid) tout en ayant plusieurs consommateurs.
+ *
+ * Principe :
+ * - le tampon contient N voies (lanes), chacune un buffer circulaire FIFO ;
+ * un message est rangé dans la voie hash(clé) mod N, donc tous les
+ * messages d'une clé passent par la même voie, dans l'ordre des put(),
+ * - un consommateur qui obtient un message par get() devient propriétaire
+ * de sa voie jusqu'à son get() suivant : pendant qu'il traite le message,
+ * aucun autre consommateur ne peut prendre le message suivant de la voie,
+ * - get() commence donc par rendre la voie détenue par l'appelant, puis
+ * choisit une voie non vide et libre (parcours circulaire à partir de la
+ * voie suivant la dernière servie, pour répartir la charge).
+ *
+ * Un consommateur qui s'arrête sans refaire de get() doit appeler
+ * release() ; à défaut, la voie d'un thread terminé est considérée comme
+ * libre (constaté au put() ou au get() suivant).
+ *
+ * Chaque voie a sa propre capacité et sa propre condition notFull. Les
+ * consommateurs attendent sur une condition commune "voie disponible".
+ *
+ * La terminaison suit le contrat buffer-centré de la v4 :
+ * setProducersCount(n), producerDone(), isClosed(), et get() renvoie
+ * null lorsque le buffer est fermé et vide.
+ */
+public class PartitionedProdConsBuffer implements IProdConsBuffer {
+
+    /**
+     * Un buffer circulaire par voie.
+     */
+    private final Message[][] lanes;
+
+    /**
+     * Index de prochaine écriture / lecture et nombre de messages, par voie.
+     */
+    private final int[] in;
+    private final int[] out;
+    private final int[] counts;
+
+    /**
+     * Consommateur propriétaire de chaque voie (null = voie libre).
+     */
+    private final Thread[] owners;
+
+    /**
+     * Clé de partitionnement d'un message.
+     */
+    private final ToLongFunction<Message> key;
+
+    /**
+     * Voie à partir de laquelle commence la prochaine recherche.
+     */
+    private int next = 0;
+
+    /**
+     * Nombre total de messages, toutes voies confondues.
+     */
+    private volatile int count = 0;
+
+    private int totalProduced = 0;
+    private int producersRemaining = 0;
+    private volatile boolean closed = false;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+
+    /**
+     * Condition "voie pas pleine", une par voie.
+     */
+    private final Condition[] notFull;
+
+    /**
+     * Condition "une voie non vide est libre (ou buffer fermé)".
+     */
+    private final Condition laneAvailable;
+
+    /**
+     * Construit un tampon partitionné par producteur.
+     *
+     * @param capacity capacité de chaque voie (strictement positive)
+     * @param nLanes   nombre de voies (strictement positif)
+     */
+    public PartitionedProdConsBuffer(int capacity, int nLanes) {
+        this(capacity, nLanes, m -> m.producerTid);
+    }
+
+    /**
+     * Construit un tampon partitionné selon une clé quelconque.
+     *
+     * @param capacity capacité de chaque voie (strictement positive)
+     * @param nLanes   nombre de voies (strictement positif)
+     * @param key      clé de partitionnement des messages
+     */
+    public PartitionedProdConsBuffer(int capacity, int nLanes, ToLongFunction<Message> key) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity <= 0");
+        if (nLanes <= 0)
+            throw new IllegalArgumentException("nLanes <= 0");
+        if (key == null)
+            throw new NullPointerException("key == null");
+        this.lanes = new Message[nLanes][capacity];
+        this.in = new int[nLanes];
+        this.out = new int[nLanes];
+        this.counts = new int[nLanes];
+        this.owners = new Thread[nLanes];
+        this.key = key;
+        this.notFull = new Condition[nLanes];
+        for (int l = 0; l < nLanes; l++)
+            notFull[l] = lock.newCondition();
+        this.laneAvailable = lock.newCondition();
+    }
+
+    @Override
+    public void setProducersCount(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n < 0");
+        lock.lock();
+        try {
+            this.producersRemaining = n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void producerDone() {
+        lock.lock();
+        try {
+            if (producersRemaining > 0) {
+                producersRemaining--;
+                if (producersRemaining == 0) {
+                    closed = true;
+                    laneAvailable.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void put(Message m) throws InterruptedException {
+        int l = laneOf(m);
+        lock.lock();
+        try {
+            while (counts[l] == lanes[l].length)
+                notFull[l].await();
+            enqueue(l, m);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rend la voie détenue par l'appelant, puis retire le message de tête
+     * d'une voie libre et en devient propriétaire.
+     * Bloque tant qu'aucune voie non vide n'est libre et que le buffer n'est
+     * pas fermé et vide.
+     */
+    @Override
+    public Message get() throws InterruptedException {
+        Thread me = Thread.currentThread();
+        lock.lock();
+        try {
+            releaseHeld(me);
+            int l;
+            while ((l = pickLane()) < 0) {
+                if (count == 0 && closed)
+                    return null;
+                laneAvailable.await();
+            }
+            return dequeue(l, me);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean tryPut(Message m) {
+        int l = laneOf(m);
+        lock.lock();
+        try {
+            if (counts[l] == lanes[l].length)
+                return false;
+            enqueue(l, m);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        int l = laneOf(m);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (counts[l] == lanes[l].length) {
+                if (nanos <= 0)
+                    return false;
+                nanos = notFull[l].awaitNanos(nanos);
+            }
+            enqueue(l, m);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Comme get(), sans attendre : renvoie null si aucune voie non vide
+     * n'est libre. La voie de l'appelant est rendue dans tous les cas.
+     */
+    @Override
+    public Message tryGet() {
+        Thread me = Thread.currentThread();
+        lock.lock();
+        try {
+            releaseHeld(me);
+            int l = pickLane();
+            return l < 0 ? null : dequeue(l, me);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        Thread me = Thread.currentThread();
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            releaseHeld(me);
+            int l;
+            while ((l = pickLane()) < 0) {
+                if ((count == 0 && closed) || nanos <= 0)
+                    return null;
+                nanos = laneAvailable.awaitNanos(nanos);
+            }
+            return dequeue(l, me);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rend la voie détenue par le thread courant sans prendre de nouveau
+     * message (consommateur qui s'arrête ou qui fait une pause).
+     */
+    public void release() {
+        lock.lock();
+        try {
+            releaseHeld(Thread.currentThread());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return nombre de voies
+     */
+    public int lanes() {
+        return lanes.length;
+    }
+
+    /**
+     * Voie d'un message : hash de sa clé modulo le nombre de voies.
+     */
+    private int laneOf(Message m) {
+        long k = key.applyAsLong(m);
+        // Mélange des bits (clés souvent consécutives, comme les tid)
+        int h = Long.hashCode(k * 0x9E3779B97F4A7C15L);
+        return Math.floorMod(h ^ (h >>> 16), lanes.length);
+    }
+
+    /**
+     * Rend la voie détenue par t, s'il en détient une (verrou tenu), et
+     * réveille un consommateur si elle contient encore des messages.
+     */
+    private void releaseHeld(Thread t) {
+        for (int l = 0; l < owners.length; l++) {
+            if (owners[l] == t) {
+                owners[l] = null;
+                if (counts[l] > 0)
+                    laneAvailable.signal();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Cherche une voie non vide et libre, en partant de next (verrou tenu).
+     * Une voie dont le propriétaire est terminé est considérée comme libre.
+     *
+     * @return l'indice de la voie, ou -1 s'il n'y en a pas
+     */
+    private int pickLane() {
+        if (count == 0)
+            return -1;
+        for (int i = 0; i < lanes.length; i++) {
+            int l = (next + i) % lanes.length;
+            if (counts[l] == 0)
+                continue;
+            Thread o = owners[l];
+            if (o == null || !o.isAlive()) {
+                next = (l + 1) % lanes.length;
+                return l;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Insère m dans la voie l (verrou tenu, voie non pleine) et réveille un
+     * consommateur si la voie est libre.
+     */
+    private void enqueue(int l, Message m) {
+        lanes[l][in[l]] = m;
+        in[l] = (in[l] + 1) % lanes[l].length;
+        counts[l]++;
+        count++;
+        totalProduced++;
+        // Propriétaire terminé sans release() : la voie est libre.
+        Thread o = owners[l];
+        if (o != null && !o.isAlive())
+            owners[l] = null;
+        // Une voie détenue sera reprise par son propriétaire à son get()
+        // suivant : inutile de réveiller quelqu'un.
+        if (owners[l] == null)
+            laneAvailable.signal();
+    }
+
+    /**
+     * Retire le message de tête de la voie l, qui passe à owner (verrou
+     * tenu, voie non vide et libre).
+     */
+    private Message dequeue(int l, Thread owner) {
+        Message m = lanes[l][out[l]];
+        lanes[l][out[l]] = null;
+        out[l] = (out[l] + 1) % lanes[l].length;
+        counts[l]--;
+        count--;
+        owners[l] = owner;
+        notFull[l].signal();
+        // Dernier message après la fermeture : les consommateurs endormis
+        // (voies alors détenues par d'autres) doivent voir la fin.
+        if (count == 0 && closed)
+            laneAvailable.signalAll();
+        return m;
+    }
+
+    @Override
+    public int nmsg() {
+        return count;
+    }
+
+    @Override
+    public int totmsg() {
+        lock.lock();
+        try {
+            return totalProduced;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
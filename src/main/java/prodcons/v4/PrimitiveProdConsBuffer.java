@@ -0,0 +1,381 @@
+package prodcons.v4;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tampon borné sans allocation pour la version v4.
+ *
+ * Un Message n'est qu'un couple (int id, long producerTid) : au lieu de
+ * stocker des références vers des objets Message, le tampon range ces deux
+ * champs dans deux tableaux parallèles (ids[] et tids[]).
+ *
+ * API sans allocation :
+ * - put(int id, long producerTid) côté producteur,
+ * - get(MessageHandler) : un message passé à un rappel,
+ * - get(int[] ids, long[] tids) : un lot copié dans des tableaux fournis
+ * (et réutilisés) par le consommateur.
+ * En régime établi, ni la production ni la consommation n'allouent donc
+ * d'objet, ce qui supprime la pression sur le ramasse-miettes.
+ *
+ * L'interface IProdConsBuffer reste disponible (put(Message) / get()) pour
+ * les producteurs et consommateurs existants ; get() recrée alors un
+ * Message.
+ *
+ * La synchronisation est celle de ProdConsBuffer : ReentrantLock équitable,
+ * conditions notFull / notEmpty et WaitStrategy. Les variantes sans attente
+ * (tryPut, tryGet) et à délai (offer, poll) existent aussi sous forme
+ * primitive : tryPut(id, tid), offer(id, tid, timeout, unit).
+ */
+public class PrimitiveProdConsBuffer implements IProdConsBuffer {
+
+    /**
+     * Identifiants des messages (tableau circulaire).
+     */
+    private final int[] ids;
+
+    /**
+     * Identifiants des threads producteurs, en parallèle de ids.
+     */
+    private final long[] tids;
+
+    /**
+     * Index de la prochaine écriture.
+     */
+    private int in = 0;
+
+    /**
+     * Index de la prochaine lecture.
+     */
+    private int out = 0;
+
+    /**
+     * Nombre de messages présents (volatile pour la WaitStrategy).
+     */
+    private volatile int count = 0;
+
+    /**
+     * Nombre total de messages produits depuis le début.
+     */
+    private int totalProduced = 0;
+
+    /**
+     * Nombre de producteurs n'ayant pas encore signalé leur fin.
+     */
+    private int producersRemaining = 0;
+
+    /**
+     * Indique que tous les producteurs ont terminé.
+     */
+    private volatile boolean closed = false;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * Stratégie d'attente sur notFull / notEmpty.
+     */
+    private final WaitStrategy waitStrategy;
+    private final BooleanSupplier hasRoom;
+    private final BooleanSupplier hasMessageOrClosed;
+
+    /**
+     * Construit un tampon primitif avec attente bloquante.
+     *
+     * @param capacity taille maximale du buffer (strictement positive)
+     */
+    public PrimitiveProdConsBuffer(int capacity) {
+        this(capacity, WaitStrategy.blocking());
+    }
+
+    /**
+     * Construit un tampon primitif avec une stratégie d'attente.
+     *
+     * @param capacity     taille maximale du buffer (strictement positive)
+     * @param waitStrategy stratégie d'attente lorsque le buffer est plein / vide
+     */
+    public PrimitiveProdConsBuffer(int capacity, WaitStrategy waitStrategy) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity <= 0");
+        if (waitStrategy == null)
+            throw new NullPointerException("waitStrategy == null");
+        this.ids = new int[capacity];
+        this.tids = new long[capacity];
+        this.waitStrategy = waitStrategy;
+        this.hasRoom = () -> count < ids.length;
+        this.hasMessageOrClosed = () -> count > 0 || closed;
+    }
+
+    @Override
+    public void setProducersCount(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n < 0");
+        lock.lock();
+        try {
+            this.producersRemaining = n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void producerDone() {
+        lock.lock();
+        try {
+            if (producersRemaining > 0) {
+                producersRemaining--;
+                if (producersRemaining == 0) {
+                    closed = true;
+                    notEmpty.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Insère un message donné par ses champs, sans créer d'objet.
+     * Bloque tant que le buffer est plein.
+     *
+     * @param id          identifiant du message
+     * @param producerTid identifiant du thread producteur
+     * @throws InterruptedException si le thread est interrompu pendant l'attente
+     */
+    public void put(int id, long producerTid) throws InterruptedException {
+        lock.lock();
+        try {
+            while (count == ids.length) {
+                waitStrategy.await(lock, notFull, hasRoom);
+            }
+            enqueue(id, producerTid);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Insère un message donné par ses champs, sans attendre.
+     *
+     * @param id          identifiant du message
+     * @param producerTid identifiant du thread producteur
+     * @return true si le message a été inséré, false si le buffer est plein
+     */
+    public boolean tryPut(int id, long producerTid) {
+        lock.lock();
+        try {
+            if (count == ids.length)
+                return false;
+            enqueue(id, producerTid);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Insère un message donné par ses champs, en attendant au plus timeout
+     * qu'une place se libère.
+     *
+     * @param id          identifiant du message
+     * @param producerTid identifiant du thread producteur
+     * @param timeout     délai maximal d'attente
+     * @param unit        unité de timeout
+     * @return true si le message a été inséré, false si le délai a expiré
+     * @throws InterruptedException si le thread est interrompu pendant l'attente
+     */
+    public boolean offer(int id, long producerTid, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == ids.length) {
+                if (nanos <= 0)
+                    return false;
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(id, producerTid);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retire un message et le passe au rappel (appelé hors verrou).
+     * Bloque tant que le buffer est vide et que la production continue.
+     *
+     * @param handler rappel recevant (id, producerTid)
+     * @return true si un message a été traité, false si le buffer est fermé
+     *         et vide
+     * @throws InterruptedException si le thread est interrompu pendant l'attente
+     */
+    public boolean get(MessageHandler handler) throws InterruptedException {
+        int id;
+        long tid;
+        lock.lock();
+        try {
+            while (count == 0 && !closed) {
+                waitStrategy.await(lock, notEmpty, hasMessageOrClosed);
+            }
+            if (count == 0)
+                return false;
+            id = ids[out];
+            tid = tids[out];
+            out = (out + 1) % ids.length;
+            count--;
+            notFull.signal();
+        } finally {
+            lock.unlock();
+        }
+        handler.onMessage(id, tid);
+        return true;
+    }
+
+    /**
+     * Retire jusqu'à min(dstIds.length, dstTids.length) messages et les copie
+     * dans les tableaux fournis, réutilisables d'un appel à l'autre.
+     * Bloque tant que le buffer est vide et que la production continue,
+     * puis prend tout ce qui est disponible sans attendre davantage.
+     *
+     * @param dstIds  tableau recevant les identifiants
+     * @param dstTids tableau recevant les identifiants de producteurs
+     * @return nombre de messages copiés ; 0 si le buffer est fermé et vide
+     * @throws InterruptedException si le thread est interrompu pendant l'attente
+     */
+    public int get(int[] dstIds, long[] dstTids) throws InterruptedException {
+        int max = Math.min(dstIds.length, dstTids.length);
+        if (max == 0)
+            throw new IllegalArgumentException("tableaux de destination vides");
+        lock.lock();
+        try {
+            while (count == 0 && !closed) {
+                waitStrategy.await(lock, notEmpty, hasMessageOrClosed);
+            }
+            int n = Math.min(max, count);
+            for (int i = 0; i < n; i++) {
+                dstIds[i] = ids[out];
+                dstTids[i] = tids[out];
+                out = (out + 1) % ids.length;
+            }
+            count -= n;
+            if (n > 0)
+                notFull.signalAll();
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Compatibilité IProdConsBuffer : recopie les champs du message.
+     */
+    @Override
+    public void put(Message m) throws InterruptedException {
+        put(m.id, m.producerTid);
+    }
+
+    /**
+     * Compatibilité IProdConsBuffer : recrée un Message (alloue).
+     */
+    @Override
+    public Message get() throws InterruptedException {
+        lock.lock();
+        try {
+            while (count == 0 && !closed) {
+                waitStrategy.await(lock, notEmpty, hasMessageOrClosed);
+            }
+            if (count == 0)
+                return null;
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean tryPut(Message m) {
+        return tryPut(m.id, m.producerTid);
+    }
+
+    @Override
+    public boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        return offer(m.id, m.producerTid, timeout, unit);
+    }
+
+    @Override
+    public Message tryGet() {
+        lock.lock();
+        try {
+            if (count == 0)
+                return null;
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0 && !closed) {
+                if (nanos <= 0)
+                    return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            if (count == 0)
+                return null;
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Range un message dans la case in (verrou tenu, buffer non plein).
+     */
+    private void enqueue(int id, long producerTid) {
+        ids[in] = id;
+        tids[in] = producerTid;
+        in = (in + 1) % ids.length;
+        count++;
+        totalProduced++;
+        notEmpty.signal();
+    }
+
+    /**
+     * Retire le message de la case out sous forme de Message (verrou tenu,
+     * buffer non vide).
+     */
+    private Message dequeue() {
+        Message m = new Message(ids[out], tids[out]);
+        out = (out + 1) % ids.length;
+        count--;
+        notFull.signal();
+        return m;
+    }
+
+    @Override
+    public int nmsg() {
+        return count;
+    }
+
+    @Override
+    public int totmsg() {
+        lock.lock();
+        try {
+            return totalProduced;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,7 +1,17 @@
 package prodcons.v4;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 
 /**
  * Tampon borné pour la version v4 utilisant ReentrantLock et Condition.
@@ -15,6 +25,32 @@ import java.util.concurrent.locks.ReentrantLock;
  * La terminaison est gérée par :
  * - un compteur de producteurs restants (producersRemaining),
  * - un drapeau "closed" indiquant que la production est terminée.
+ *
+ * Les attentes côté producteur (buffer plein) passent par une WaitStrategy :
+ * blocage immédiat par défaut, ou attente active préalable. La variante à
+ * délai (offer) attend directement sur notFull avec awaitNanos ;
+ * tryPut / tryGet n'attendent jamais.
+ *
+ * Transfert direct : un consommateur qui trouve le buffer vide (après
+ * l'éventuelle attente active de la WaitStrategy) s'inscrit dans la file
+ * FIFO waiters puis s'endort hors verrou (LockSupport.park). Tant que cette
+ * file n'est pas vide, le buffer est vide : un producteur remet alors le
+ * message directement au premier consommateur inscrit, sans passer par le
+ * buffer circulaire, et le réveille après avoir rendu le verrou. Le
+ * consommateur réveillé repart avec son message sans reprendre le verrou.
+ * Un message null est refusé (NullPointerException) : pour un consommateur
+ * inscrit, null signifie "pas encore servi".
+ *
+ * API asynchrone : putAsync / getAsync ne bloquent jamais et renvoient un
+ * CompletableFuture. Un getAsync() sur buffer vide inscrit un futur dans la
+ * même file waiters que les consommateurs endormis ; un putAsync() sur
+ * buffer plein inscrit un futur dans la file putters, servie en priorité
+ * par le consommateur qui libère une case (le message y entre alors
+ * directement). Les futurs sont complétés hors verrou, par le thread qui
+ * les a servis ou par l'Executor fourni à l'appel. Annuler (ou compléter
+ * de l'extérieur) un futur encore en attente le retire de sa file ; une
+ * fois servi, il ne peut plus être annulé, de sorte qu'aucun message n'est
+ * perdu ni inséré à tort.
  */
 public class ProdConsBuffer implements IProdConsBuffer {
 
@@ -36,8 +72,9 @@ public class ProdConsBuffer implements IProdConsBuffer {
     /**
      * Nombre de messages actuellement présents dans le buffer.
      * On a toujours 0 <= count <= buf.length.
+     * Volatile : relu sans verrou par les stratégies d'attente active.
      */
-    private int count = 0;
+    private volatile int count = 0;
 
     /**
      * Nombre total de messages produits depuis le début.
@@ -55,7 +92,7 @@ public class ProdConsBuffer implements IProdConsBuffer {
      * Indique si la production est définitivement terminée.
      * Quand closed == true, aucun nouveau message ne sera inséré.
      */
-    private boolean closed = false;
+    private volatile boolean closed = false;
 
     // Synchronisation via ReentrantLock et conditions associées
 
@@ -74,11 +111,35 @@ public class ProdConsBuffer implements IProdConsBuffer {
     private final Condition notFull = lock.newCondition();
 
     /**
-     * Condition "buffer pas vide".
-     * Les consommateurs attendent dessus lorsque le buffer est vide
-     * (count == 0).
+     * Consommateurs endormis sur un buffer vide, dans l'ordre d'arrivée.
+     * Invariant : waiters non vide implique count == 0 (un put() servi
+     * pendant que des consommateurs attendent ne passe pas par le buffer).
      */
-    private final Condition notEmpty = lock.newCondition();
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+
+    /**
+     * putAsync() en attente d'une case libre, dans l'ordre d'arrivée.
+     * Invariant : putters non vide implique count == buf.length.
+     */
+    private final ArrayDeque<AsyncPut> putters = new ArrayDeque<>();
+
+    /**
+     * Complété (hors verrou) lorsque le buffer est fermé et vide.
+     */
+    private final CompletableFuture<Void> drained = new CompletableFuture<>();
+
+    /**
+     * Stratégie d'attente (notFull pour les producteurs, attente active
+     * préalable à l'inscription dans waiters pour les consommateurs).
+     */
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * Gardes relues sans verrou par la stratégie d'attente
+     * (créées une fois pour ne pas allouer à chaque attente).
+     */
+    private final BooleanSupplier hasRoom;
+    private final BooleanSupplier hasMessageOrClosed;
 
     /**
      * Construit un buffer v4 avec une capacité donnée.
@@ -86,11 +147,27 @@ public class ProdConsBuffer implements IProdConsBuffer {
      * @param capacity taille maximale du buffer (strictement positive)
      */
     public ProdConsBuffer(int capacity) {
+        this(capacity, WaitStrategy.blocking());
+    }
+
+    /**
+     * Construit un buffer v4 avec une capacité et une stratégie d'attente.
+     *
+     * @param capacity     taille maximale du buffer (strictement positive)
+     * @param waitStrategy stratégie d'attente lorsque le buffer est plein / vide
+     */
+    public ProdConsBuffer(int capacity, WaitStrategy waitStrategy) {
         if (capacity <= 0)
             throw new IllegalArgumentException("capacity <= 0");
+        if (waitStrategy == null)
+            throw new NullPointerException("waitStrategy == null");
         this.buf = new Message[capacity];
+        this.waitStrategy = waitStrategy;
+        this.hasRoom = () -> count < buf.length;
+        this.hasMessageOrClosed = () -> count > 0 || closed;
     }
 
+    @Override
     public void setProducersCount(int n) {
         if (n < 0)
             throw new IllegalArgumentException("n < 0");
@@ -102,7 +179,9 @@ public class ProdConsBuffer implements IProdConsBuffer {
         }
     }
 
+    @Override
     public void producerDone() {
+        List<AsyncGet> ended = null;
         lock.lock();
         try {
             if (producersRemaining > 0) {
@@ -110,16 +189,31 @@ public class ProdConsBuffer implements IProdConsBuffer {
                 // Quand le dernier producteur a fini, on ferme le buffer
                 if (producersRemaining == 0) {
                     closed = true;
-                    // Réveiller tous les consommateurs potentiellement
-                    // bloqués sur notEmpty pour qu'ils voient que closed == true.
-                    notEmpty.signalAll();
+                    // Réveiller tous les consommateurs endormis pour qu'ils
+                    // voient que closed == true (le buffer est vide) ; les
+                    // getAsync() en attente recevront null, hors verrou.
+                    Waiter w;
+                    while ((w = waiters.poll()) != null) {
+                        if (w.future == null) {
+                            LockSupport.unpark(w.thread);
+                        } else {
+                            w.future.served = true;
+                            if (ended == null)
+                                ended = new ArrayList<>();
+                            ended.add(w.future);
+                        }
+                    }
                 }
             }
         } finally {
             lock.unlock();
         }
+        if (ended != null)
+            ended.forEach(f -> f.fire(null));
+        checkDrained();
     }
 
+    @Override
     public boolean isClosed() {
         lock.lock();
         try {
@@ -131,29 +225,26 @@ public class ProdConsBuffer implements IProdConsBuffer {
 
     /**
      * Insère un message dans le buffer.
-     * Bloque tant que le buffer est plein.
+     * Bloque tant que le buffer est plein. Si un consommateur est endormi
+     * (buffer vide), le message lui est remis directement.
      */
     @Override
     public void put(Message m) throws InterruptedException {
+        if (m == null)
+            throw new NullPointerException("m == null");
+        Waiter w;
         lock.lock();
         try {
             // Tant que le buffer est plein, on attend sur la condition "notFull".
             while (count == buf.length) {
-                notFull.await(); // attendre de la place
+                waitStrategy.await(lock, notFull, hasRoom); // attendre de la place
             }
-
-            // Insertion du message dans la case "in"
-            buf[in] = m;
-            in = (in + 1) % buf.length;
-            count++;
-            totalProduced++;
-
-            // Au moins un message est désormais disponible pour un consommateur.
-            // signal() réveille un seul consommateur en attente.
-            notEmpty.signal();
+            w = deliver(m);
         } finally {
             lock.unlock();
         }
+        // Réveil hors verrou : le consommateur n'a pas à le reprendre.
+        wake(w);
     }
 
     /**
@@ -161,37 +252,503 @@ public class ProdConsBuffer implements IProdConsBuffer {
      * Bloque tant que le buffer est vide et que la production n'est pas terminée.
      *
      * Cas particuliers :
-     * - Tant que count == 0 et que closed == false, on attend sur notEmpty.
+     * - Tant que count == 0 et que closed == false, on attend un transfert
+     * direct d'un producteur (voir awaitHandOff).
      * - Si on se réveille avec count == 0 et closed == true, cela signifie
      * qu'aucun nouveau message n'arrivera : on renvoie null pour signaler
      * la fin au consommateur.
      */
     @Override
     public Message get() throws InterruptedException {
+        // Attente active éventuelle (hors verrou) avant de s'inscrire.
+        if (!hasMessageOrClosed.getAsBoolean())
+            waitStrategy.spin(hasMessageOrClosed);
+        return awaitHandOff(false, 0L);
+    }
+
+    @Override
+    public boolean tryPut(Message m) {
+        if (m == null)
+            throw new NullPointerException("m == null");
+        Waiter w;
         lock.lock();
         try {
-            // Attente conditionnelle : buffer vide mais production encore active
-            while (count == 0 && !closed) {
-                notEmpty.await();
+            if (count == buf.length)
+                return false;
+            w = deliver(m);
+        } finally {
+            lock.unlock();
+        }
+        wake(w);
+        return true;
+    }
+
+    @Override
+    public boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        if (m == null)
+            throw new NullPointerException("m == null");
+        Waiter w;
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == buf.length) {
+                if (nanos <= 0)
+                    return false;
+                nanos = notFull.awaitNanos(nanos);
             }
+            w = deliver(m);
+        } finally {
+            lock.unlock();
+        }
+        wake(w);
+        return true;
+    }
 
-            // Si le buffer est vide ET fermé, plus rien à consommer
-            if (count == 0 && closed) {
+    @Override
+    public Message tryGet() {
+        Message m;
+        AsyncPut p;
+        lock.lock();
+        try {
+            if (count == 0)
                 return null;
-            }
+            m = dequeue();
+            p = refill();
+        } finally {
+            lock.unlock();
+        }
+        complete(p);
+        checkDrained();
+        return m;
+    }
 
-            // Cas normal : on retire un message du buffer circulaire
-            Message m = buf[out];
-            buf[out] = null;
-            out = (out + 1) % buf.length;
-            count--;
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        return awaitHandOff(true, unit.toNanos(timeout));
+    }
 
-            // On a libéré une case : réveiller éventuellement un producteur
-            notFull.signal();
+    /**
+     * Retrait commun à get et poll : sert depuis le buffer s'il contient un
+     * message, sinon inscrit le consommateur dans waiters et l'endort hors
+     * verrou jusqu'au transfert direct, à la fermeture ou au délai.
+     *
+     * @param timed true pour borner l'attente à nanos (poll)
+     * @return le message, ou null si le buffer est fermé et vide ou si le
+     *         délai a expiré
+     */
+    private Message awaitHandOff(boolean timed, long nanos) throws InterruptedException {
+        final Waiter w;
+        Message m = null;
+        AsyncPut p = null;
+        lock.lock();
+        try {
+            if (count > 0) {
+                m = dequeue();
+                p = refill();
+                w = null;
+            } else {
+                if (closed || (timed && nanos <= 0))
+                    return null;
+                w = new Waiter(Thread.currentThread(), null);
+                waiters.add(w);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (w == null) {
+            complete(p);
+            checkDrained();
             return m;
+        }
+
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        boolean interrupted = false;
+        while (w.item == null && !closed) {
+            if (Thread.interrupted()) {
+                interrupted = true;
+                break;
+            }
+            if (!timed) {
+                LockSupport.park(this);
+            } else {
+                nanos = deadline - System.nanoTime();
+                if (nanos <= 0)
+                    break;
+                LockSupport.parkNanos(this, nanos);
+            }
+        }
+
+        m = w.item;
+        if (m == null) {
+            // Interruption, délai ou fermeture : on se retire de la file,
+            // sauf si un producteur nous a servis entre-temps.
+            lock.lock();
+            try {
+                m = w.item;
+                if (m == null)
+                    waiters.remove(w);
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (interrupted) {
+            if (m == null)
+                throw new InterruptedException();
+            // Message déjà remis : on le rend et on conserve l'interruption.
+            Thread.currentThread().interrupt();
+        }
+        return m;
+    }
+
+    /**
+     * Retire d'un coup, sous une seule prise du verrou, jusqu'à max
+     * messages présents, sans attendre.
+     *
+     * @param c   collection recevant les messages, dans l'ordre FIFO
+     * @param max nombre maximal de messages retirés
+     * @return nombre de messages ajoutés à c
+     */
+    public int drainTo(Collection<? super Message> c, int max) {
+        if (c == null)
+            throw new NullPointerException("c == null");
+        List<AsyncPut> served = null;
+        int n;
+        lock.lock();
+        try {
+            n = Math.min(count, max);
+            for (int i = 0; i < n; i++) {
+                c.add(dequeue());
+                AsyncPut p = refill();
+                if (p != null) {
+                    if (served == null)
+                        served = new ArrayList<>();
+                    served.add(p);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (served != null)
+            served.forEach(ProdConsBuffer::complete);
+        checkDrained();
+        return Math.max(n, 0);
+    }
+
+    /**
+     * Fin du buffer, sans bloquer ni retirer de message : utile à un
+     * consommateur asynchrone qui ne demande plus rien (BufferPublisher
+     * sans demande) mais doit apprendre la fin.
+     *
+     * @return un futur complété lorsque le buffer est fermé et vide (le
+     *         compléter ou l'annuler n'a pas d'effet sur le buffer)
+     */
+    public CompletableFuture<Void> whenDrained() {
+        checkDrained();
+        return drained.copy();
+    }
+
+    /**
+     * Complète drained si le buffer est fermé et vide (verrou rendu : les
+     * actions dépendantes ne s'exécutent pas en section critique).
+     */
+    private void checkDrained() {
+        if (closed && count == 0 && !drained.isDone())
+            drained.complete(null);
+    }
+
+    /**
+     * Insère m sans bloquer le thread appelant.
+     *
+     * @return un futur complété une fois m placé dans le buffer ou remis à
+     *         un consommateur (immédiatement s'il y a de la place)
+     */
+    public CompletableFuture<Void> putAsync(Message m) {
+        return putAsync(m, null);
+    }
+
+    /**
+     * Comme putAsync(m), le futur étant complété via executor s'il doit
+     * attendre une case libre.
+     *
+     * @param executor exécuteur des complétions différées (null = thread
+     *                 qui libère la case)
+     */
+    public CompletableFuture<Void> putAsync(Message m, Executor executor) {
+        if (m == null)
+            throw new NullPointerException("m == null");
+        Waiter w;
+        lock.lock();
+        try {
+            if (count == buf.length) {
+                AsyncPut f = new AsyncPut(m, executor);
+                putters.add(f);
+                return f;
+            }
+            w = deliver(m);
         } finally {
             lock.unlock();
         }
+        wake(w);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Retire un message sans bloquer le thread appelant.
+     *
+     * @return un futur complété avec le message, ou avec null si le buffer
+     *         est fermé et vide (immédiatement si un message est présent)
+     */
+    public CompletableFuture<Message> getAsync() {
+        return getAsync(null);
+    }
+
+    /**
+     * Comme getAsync(), le futur étant complété via executor s'il doit
+     * attendre un message.
+     *
+     * @param executor exécuteur des complétions différées (null = thread
+     *                 qui remet le message ou ferme le buffer)
+     */
+    public CompletableFuture<Message> getAsync(Executor executor) {
+        Message m;
+        AsyncPut p;
+        lock.lock();
+        try {
+            if (count == 0) {
+                if (closed)
+                    return CompletableFuture.completedFuture(null);
+                AsyncGet f = new AsyncGet(executor);
+                waiters.add(new Waiter(null, f));
+                return f;
+            }
+            m = dequeue();
+            p = refill();
+        } finally {
+            lock.unlock();
+        }
+        complete(p);
+        checkDrained();
+        return CompletableFuture.completedFuture(m);
+    }
+
+    /**
+     * Remet m au premier consommateur endormi s'il y en a un, sinon l'insère
+     * dans le buffer (verrou tenu, buffer non plein).
+     *
+     * @return le consommateur servi, à réveiller par l'appelant après avoir
+     *         rendu le verrou, ou null si m a été placé dans le buffer
+     */
+    private Waiter deliver(Message m) {
+        Waiter w = waiters.poll();
+        if (w == null) {
+            enqueue(m);
+            return null;
+        }
+        w.item = m;
+        if (w.future != null)
+            w.future.served = true;
+        totalProduced++;
+        return w;
+    }
+
+    /**
+     * Réveille le consommateur servi par deliver (verrou rendu) : thread
+     * endormi ou futur de getAsync().
+     */
+    private void wake(Waiter w) {
+        if (w == null)
+            return;
+        if (w.future != null)
+            w.future.fire(w.item);
+        else
+            LockSupport.unpark(w.thread);
+    }
+
+    /**
+     * Fait entrer dans la case libérée par dequeue le message du premier
+     * putAsync() en attente (verrou tenu).
+     *
+     * @return le putAsync() servi, à compléter par l'appelant après avoir
+     *         rendu le verrou, ou null
+     */
+    private AsyncPut refill() {
+        AsyncPut p = putters.poll();
+        if (p != null) {
+            enqueue(p.msg);
+            p.served = true;
+        }
+        return p;
+    }
+
+    private static void complete(AsyncPut p) {
+        if (p != null)
+            p.fire();
+    }
+
+    /**
+     * Insère un message dans la case "in" (verrou tenu, buffer non plein).
+     */
+    private void enqueue(Message m) {
+        buf[in] = m;
+        in = (in + 1) % buf.length;
+        count++;
+        totalProduced++;
+    }
+
+    /**
+     * Retire le message de la case "out" (verrou tenu, buffer non vide).
+     */
+    private Message dequeue() {
+        Message m = buf[out];
+        buf[out] = null;
+        out = (out + 1) % buf.length;
+        count--;
+
+        // On a libéré une case : réveiller éventuellement un producteur,
+        // sauf si un putAsync() en attente va la prendre (refill).
+        if (putters.isEmpty())
+            notFull.signal();
+        return m;
+    }
+
+    /**
+     * Consommateur inscrit dans waiters en attente d'un transfert direct :
+     * thread endormi (thread) ou getAsync() en attente (future).
+     */
+    private static final class Waiter {
+        final Thread thread;
+        final AsyncGet future;
+
+        /**
+         * Message remis par un producteur (écrit sous verrou, relu sans
+         * verrou par le consommateur).
+         */
+        volatile Message item;
+
+        Waiter(Thread thread, AsyncGet future) {
+            this.thread = thread;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Exécute une complétion sur executor, ou sur le thread courant s'il
+     * n'y en a pas ou s'il refuse la tâche.
+     */
+    private static void runOn(Executor executor, Runnable r) {
+        if (executor != null) {
+            try {
+                executor.execute(r);
+                return;
+            } catch (RejectedExecutionException e) {
+                // Exécuteur arrêté : on complète quand même.
+            }
+        }
+        r.run();
+    }
+
+    /**
+     * Futur renvoyé par getAsync() en attente. served passe à vrai (sous
+     * verrou) lorsque le futur est servi ou retiré : les complétions
+     * extérieures (cancel, complete, orTimeout...) ne réussissent que si
+     * elles le retirent de waiters avant qu'un producteur le serve.
+     */
+    private final class AsyncGet extends CompletableFuture<Message> {
+        private final Executor executor;
+        boolean served;
+
+        AsyncGet(Executor executor) {
+            this.executor = executor;
+        }
+
+        void fire(Message m) {
+            runOn(executor, () -> super.complete(m));
+        }
+
+        private boolean withdraw() {
+            lock.lock();
+            try {
+                if (served)
+                    return false;
+                served = true;
+                waiters.removeIf(w -> w.future == this);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean complete(Message value) {
+            return withdraw() && super.complete(value);
+        }
+
+        @Override
+        public boolean completeExceptionally(Throwable ex) {
+            return withdraw() && super.completeExceptionally(ex);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return withdraw() && super.cancel(mayInterruptIfRunning);
+        }
+    }
+
+    /**
+     * Futur renvoyé par putAsync() sur buffer plein, avec son message.
+     * Même règle que AsyncGet : un futur retiré avant d'être servi
+     * n'insère pas son message.
+     */
+    private final class AsyncPut extends CompletableFuture<Void> {
+        final Message msg;
+        private final Executor executor;
+        boolean served;
+
+        AsyncPut(Message msg, Executor executor) {
+            this.msg = msg;
+            this.executor = executor;
+        }
+
+        void fire() {
+            runOn(executor, () -> super.complete(null));
+        }
+
+        private boolean withdraw() {
+            lock.lock();
+            try {
+                if (served)
+                    return false;
+                served = true;
+                putters.remove(this);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean complete(Void value) {
+            return withdraw() && super.complete(value);
+        }
+
+        @Override
+        public boolean completeExceptionally(Throwable ex) {
+            return withdraw() && super.completeExceptionally(ex);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return withdraw() && super.cancel(mayInterruptIfRunning);
+        }
+    }
+
+    /**
+     * @return capacité du buffer
+     */
+    public int capacity() {
+        return buf.length;
     }
 
     /**
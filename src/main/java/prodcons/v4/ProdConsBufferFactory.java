@@ -0,0 +1,178 @@
+package prodcons.v4;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fabrique des différentes implémentations du tampon v4.
+ *
+ * Le nom de l'implémentation correspond à la clé bufImpl de options.xml :
+ * - "lock" : ProdConsBuffer (ReentrantLock équitable + conditions),
+ * - "lockfree" : LockFreeProdConsBuffer (MPMC, CAS),
+ * - "twolock" : TwoLockProdConsBuffer (verrous séparés put / take),
+ * - "primitive" : PrimitiveProdConsBuffer (tableaux int[] / long[]),
+ * - "direct" : DirectProdConsBuffer (enregistrements hors tas),
+ * - "spsc" : SpscProdConsBuffer (un producteur / un consommateur),
+ * - "sync" : SynchronousProdConsBuffer (capacité nulle, rendez-vous),
+ * - "partitioned" : PartitionedProdConsBuffer (une voie par consommateur,
+ * ordre conservé par producteur ; la capacité est répartie entre les voies),
+ * - "auto" : SpscProdConsBuffer si nProd == nCons == 1, ProdConsBuffer sinon.
+ *
+ * Les implémentations suivantes ont besoin de paramètres supplémentaires,
+ * lus dans options.xml par create(Properties, ...) :
+ * - "mapped" : MappedProdConsBuffer (fichier mappedFile, force() toutes
+ * les syncEvery opérations),
+ * - "elastic" : ElasticProdConsBuffer (capacité de départ bufSz, maximale
+ * maxBufSz, 8 × bufSz par défaut),
+ * - "expiring" : ExpiringProdConsBuffer (durée de vie par défaut ttlMs,
+ * 0 = aucune),
+ * - "delay" : DelayProdConsBuffer (délai par défaut delayMs).
+ *
+ * Les implémentations verrouillées ("lock", "twolock", "primitive",
+ * "direct" et le repli de "spsc" / "auto") utilisent la WaitStrategy
+ * fournie ; les autres gèrent elles-mêmes leur attente.
+ *
+ * Une capacité nulle désigne toujours le canal synchrone, quel que soit
+ * impl (les tampons à buffer circulaire exigent une capacité positive).
+ *
+ * La fabrique renseigne aussi le nombre de producteurs attendus
+ * (setProducersCount) pour la terminaison buffer-centrée.
+ */
+public final class ProdConsBufferFactory {
+
+    /**
+     * Crée un tampon en choisissant automatiquement la variante SPSC
+     * lorsqu'elle est sûre.
+     *
+     * @param capacity taille du tampon
+     * @param nProd    nombre de producteurs qui utiliseront le tampon
+     * @param nCons    nombre de consommateurs qui utiliseront le tampon
+     * @return un tampon prêt à l'emploi
+     */
+    public static IProdConsBuffer create(int capacity, int nProd, int nCons) {
+        return create("auto", capacity, nProd, nCons);
+    }
+
+    /**
+     * Crée le tampon décrit par les options de test (clés bufImpl, bufSz et,
+     * selon l'implémentation, mappedFile, syncEvery, maxBufSz, ttlMs,
+     * delayMs) : seul point de construction des tampons du test v4.
+     *
+     * @param options options lues dans options.xml
+     * @param nProd   nombre de producteurs
+     * @param nCons   nombre de consommateurs
+     * @param ws      stratégie d'attente des implémentations verrouillées
+     * @return un tampon prêt à l'emploi
+     * @throws IOException              si le fichier de "mapped" ne peut
+     *                                  être ouvert
+     * @throws IllegalArgumentException si bufImpl est inconnu
+     */
+    public static IProdConsBuffer create(Properties options, int nProd, int nCons, WaitStrategy ws)
+            throws IOException {
+        String impl = options.getProperty("bufImpl", "lock");
+        int capacity = Integer.parseInt(options.getProperty("bufSz"));
+        IProdConsBuffer buffer;
+        switch (capacity == 0 ? "sync" : impl) {
+            case "mapped":
+                // Tampon persistant : il peut contenir des messages d'une
+                // exécution précédente.
+                buffer = new MappedProdConsBuffer(
+                        Path.of(options.getProperty("mappedFile", "target/prodcons-v4.ring")),
+                        capacity, Integer.parseInt(options.getProperty("syncEvery", "0")), ws);
+                break;
+            case "elastic":
+                buffer = new ElasticProdConsBuffer(capacity,
+                        Integer.parseInt(options.getProperty("maxBufSz", String.valueOf(8 * capacity))), ws);
+                break;
+            case "expiring":
+                buffer = new ExpiringProdConsBuffer(capacity,
+                        Long.parseLong(options.getProperty("ttlMs", "0")), TimeUnit.MILLISECONDS);
+                break;
+            case "delay":
+                buffer = new DelayProdConsBuffer(capacity,
+                        Long.parseLong(options.getProperty("delayMs", "0")), TimeUnit.MILLISECONDS);
+                break;
+            default:
+                return create(impl, capacity, nProd, nCons, ws);
+        }
+        buffer.setProducersCount(nProd);
+        return buffer;
+    }
+
+    /**
+     * Crée un tampon de l'implémentation demandée, avec attente bloquante.
+     *
+     * @see #create(String, int, int, int, WaitStrategy)
+     */
+    public static IProdConsBuffer create(String impl, int capacity, int nProd, int nCons) {
+        return create(impl, capacity, nProd, nCons, WaitStrategy.blocking());
+    }
+
+    /**
+     * Crée un tampon de l'implémentation demandée.
+     *
+     * La variante "spsc" n'est correcte qu'avec un seul producteur et un seul
+     * consommateur : si plus d'un producteur ou consommateur est annoncé, on
+     * revient au ProdConsBuffer verrouillé.
+     *
+     * @param impl     nom de l'implémentation (voir description de la classe)
+     * @param capacity taille du tampon (0 = canal synchrone)
+     * @param nProd    nombre de producteurs
+     * @param nCons    nombre de consommateurs
+     * @param ws       stratégie d'attente des implémentations verrouillées
+     * @return un tampon prêt à l'emploi
+     * @throws IllegalArgumentException si impl est inconnu
+     */
+    public static IProdConsBuffer create(String impl, int capacity, int nProd, int nCons,
+            WaitStrategy ws) {
+        IProdConsBuffer buffer;
+        if (capacity == 0)
+            impl = "sync";
+        switch (impl) {
+            case "lock":
+                buffer = new ProdConsBuffer(capacity, ws);
+                break;
+            case "lockfree":
+                buffer = new LockFreeProdConsBuffer(capacity);
+                break;
+            case "twolock":
+                buffer = new TwoLockProdConsBuffer(capacity, ws);
+                break;
+            case "primitive":
+                buffer = new PrimitiveProdConsBuffer(capacity, ws);
+                break;
+            case "direct":
+                buffer = new DirectProdConsBuffer(capacity, ws);
+                break;
+            case "partitioned": {
+                int nLanes = Math.max(1, nCons);
+                buffer = new PartitionedProdConsBuffer(Math.max(1, (capacity + nLanes - 1) / nLanes), nLanes);
+                break;
+            }
+            case "sync":
+                buffer = new SynchronousProdConsBuffer();
+                break;
+            case "spsc":
+            case "auto":
+                if (nProd == 1 && nCons == 1) {
+                    buffer = new SpscProdConsBuffer(capacity);
+                } else {
+                    if (impl.equals("spsc"))
+                        Log.info("spsc impossible avec nProd=%d nCons=%d : repli sur ProdConsBuffer",
+                                nProd, nCons);
+                    buffer = new ProdConsBuffer(capacity, ws);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("bufImpl inconnu : " + impl);
+        }
+        buffer.setProducersCount(nProd);
+        return buffer;
+    }
+
+    // Classe utilitaire : constructeur privé pour empêcher l'instanciation.
+    private ProdConsBufferFactory() {
+    }
+}
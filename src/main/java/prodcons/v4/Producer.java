@@ -12,7 +12,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * Les identifiants de messages sont générés via un compteur global GEN
  * partagé entre tous les producteurs, ce qui garantit des IDs uniques.
  *
- * Comme en v3, la méthode ProdConsBuffer producerDone() est
+ * Comme en v3, la méthode IProdConsBuffer producerDone() est
  * appelée dans un bloc finally pour garantir que le buffer est toujours
  * informé de la fin de ce producteur, même en cas d'interruption.
  */
@@ -27,7 +27,7 @@ public class Producer extends Thread {
     /**
      * Buffer partagé dans lequel ce producteur insère ses messages.
      */
-    private final ProdConsBuffer buffer;
+    private final IProdConsBuffer buffer;
 
     /**
      * Nombre de messages que ce producteur doit produire.
@@ -47,7 +47,7 @@ public class Producer extends Thread {
      * @param quota      nombre de messages à produire
      * @param prodTimeMs délai entre deux productions
      */
-    public Producer(int pid, ProdConsBuffer buffer, int quota, int prodTimeMs) {
+    public Producer(int pid, IProdConsBuffer buffer, int quota, int prodTimeMs) {
         super("P-" + pid);
         this.buffer = buffer;
         this.quota = quota;
@@ -0,0 +1,295 @@
+package prodcons.v4;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Tampon borné spécialisé un producteur / un consommateur (SPSC).
+ *
+ * Avec un seul thread de chaque côté, aucun verrou ni CAS n'est nécessaire :
+ * - in n'est écrit que par le producteur, out que par le consommateur,
+ * - chaque index est publié par lazySet (écriture "release"), lu par get()
+ * (lecture "acquire") depuis l'autre côté,
+ * - chaque côté garde une copie locale (cache) de l'index opposé et ne relit
+ * l'index partagé que lorsque cette copie indique plein / vide,
+ * - in et out sont dans des objets séparés et rembourrés pour occuper des
+ * lignes de cache différentes (pas de faux partage).
+ *
+ * Attente : lorsque le tampon est plein (ou vide), le thread tourne un peu,
+ * puis s'endort avec LockSupport.parkNanos. La publication par lazySet
+ * n'ordonne pas l'écriture de l'index avant la lecture du drapeau d'attente
+ * du côté opposé ; l'endormissement est donc borné (PARK_NANOS) pour qu'un
+ * réveil manqué ne coûte au pire que ce délai.
+ *
+ * tryPut / tryGet ne relisent l'index opposé qu'une fois et n'attendent
+ * jamais ; offer / poll bornent l'attente active et l'endormissement par le
+ * délai fourni.
+ *
+ * ATTENTION : correct uniquement si un seul thread appelle put() et un seul
+ * thread appelle get() (ou leurs variantes try / à délai). Utiliser
+ * ProdConsBufferFactory, qui revient au ProdConsBuffer verrouillé dès qu'il
+ * y a plusieurs producteurs ou consommateurs.
+ */
+public class SpscProdConsBuffer implements IProdConsBuffer {
+
+    /**
+     * Nombre de tentatives actives avant de s'endormir.
+     */
+    private static final int SPIN_TRIES = 128;
+
+    /**
+     * Durée maximale d'un endormissement (100 µs).
+     */
+    private static final long PARK_NANOS = 100_000L;
+
+    /**
+     * Index partagé rembourré, avec la copie locale de l'index opposé.
+     * Les champs p1..p6 évitent que in et out (ou leurs caches) partagent
+     * une ligne de cache de 64 octets.
+     */
+    @SuppressWarnings("unused")
+    private static final class Cursor extends AtomicLong {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Dernière valeur lue de l'index opposé (accès par le seul
+         * propriétaire de ce curseur).
+         */
+        long cache;
+
+        long p1, p2, p3, p4, p5, p6;
+    }
+
+    /**
+     * Stockage des messages.
+     */
+    private final Message[] buf;
+
+    /**
+     * Prochaine position d'écriture (écrite par le producteur seul).
+     * in.cache = copie de out vue par le producteur.
+     */
+    private final Cursor in = new Cursor();
+
+    /**
+     * Prochaine position de lecture (écrite par le consommateur seul).
+     * out.cache = copie de in vue par le consommateur.
+     */
+    private final Cursor out = new Cursor();
+
+    /**
+     * Producteur endormi (tampon plein), ou null.
+     */
+    private volatile Thread producerWaiter;
+
+    /**
+     * Consommateur endormi (tampon vide), ou null.
+     */
+    private volatile Thread consumerWaiter;
+
+    /**
+     * Nombre de producteurs n'ayant pas encore signalé leur fin
+     * (0 ou 1 en usage normal).
+     */
+    private int producersRemaining = 0;
+
+    /**
+     * Vrai lorsque le producteur a appelé producerDone().
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Construit un tampon SPSC de capacité donnée.
+     *
+     * @param capacity taille maximale du buffer (strictement positive)
+     */
+    public SpscProdConsBuffer(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity <= 0");
+        this.buf = new Message[capacity];
+    }
+
+    @Override
+    public synchronized void setProducersCount(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n < 0");
+        this.producersRemaining = n;
+    }
+
+    @Override
+    public void producerDone() {
+        synchronized (this) {
+            if (producersRemaining == 0)
+                return;
+            if (--producersRemaining > 0)
+                return;
+        }
+        closed = true;
+        LockSupport.unpark(consumerWaiter);
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void put(Message m) throws InterruptedException {
+        long i = in.getPlain();
+        awaitRoom(i, false, 0L);
+        enqueue(i, m);
+    }
+
+    @Override
+    public Message get() throws InterruptedException {
+        long o = out.getPlain();
+        if (!awaitMessage(o, false, 0L))
+            return null;
+        return dequeue(o);
+    }
+
+    @Override
+    public boolean tryPut(Message m) {
+        long i = in.getPlain();
+        if (i - in.cache >= buf.length) {
+            in.cache = out.get();
+            if (i - in.cache >= buf.length)
+                return false;
+        }
+        enqueue(i, m);
+        return true;
+    }
+
+    @Override
+    public boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        long i = in.getPlain();
+        if (!awaitRoom(i, true, unit.toNanos(timeout)))
+            return false;
+        enqueue(i, m);
+        return true;
+    }
+
+    @Override
+    public Message tryGet() {
+        long o = out.getPlain();
+        if (o >= out.cache) {
+            out.cache = in.get();
+            if (o >= out.cache)
+                return null;
+        }
+        return dequeue(o);
+    }
+
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long o = out.getPlain();
+        if (!awaitMessage(o, true, unit.toNanos(timeout)))
+            return null;
+        return dequeue(o);
+    }
+
+    /**
+     * Attente (producteur) d'une case libre pour la position i.
+     *
+     * @param timed true pour borner l'attente à nanos
+     * @return false si le délai a expiré avec un tampon toujours plein
+     */
+    private boolean awaitRoom(long i, boolean timed, long nanos) throws InterruptedException {
+        if (i - in.cache < buf.length)
+            return true;
+        in.cache = out.get();
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        int spins = 0;
+        while (i - in.cache >= buf.length) {
+            if (timed && (nanos = deadline - System.nanoTime()) <= 0)
+                return false;
+            if (spins++ < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                producerWaiter = Thread.currentThread();
+                if (i - out.get() >= buf.length)
+                    LockSupport.parkNanos(this, timed ? Math.min(nanos, PARK_NANOS) : PARK_NANOS);
+                producerWaiter = null;
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+            }
+            in.cache = out.get();
+        }
+        return true;
+    }
+
+    /**
+     * Attente (consommateur) d'un message à la position o.
+     *
+     * @param timed true pour borner l'attente à nanos
+     * @return false si le tampon est fermé et vide, ou si le délai a expiré
+     */
+    private boolean awaitMessage(long o, boolean timed, long nanos) throws InterruptedException {
+        if (o < out.cache)
+            return true;
+        out.cache = in.get();
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        int spins = 0;
+        while (o >= out.cache) {
+            if (closed) {
+                // producerDone() suit le dernier put() : on relit in
+                // une dernière fois avant de conclure.
+                out.cache = in.get();
+                return o < out.cache;
+            }
+            if (timed && (nanos = deadline - System.nanoTime()) <= 0)
+                return false;
+            if (spins++ < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                consumerWaiter = Thread.currentThread();
+                if (o >= in.get() && !closed)
+                    LockSupport.parkNanos(this, timed ? Math.min(nanos, PARK_NANOS) : PARK_NANOS);
+                consumerWaiter = null;
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+            }
+            out.cache = in.get();
+        }
+        return true;
+    }
+
+    /**
+     * Écrit m à la position i et la publie (case libre vérifiée).
+     */
+    private void enqueue(long i, Message m) {
+        buf[(int) (i % buf.length)] = m;
+        in.lazySet(i + 1);
+        Thread w = consumerWaiter;
+        if (w != null)
+            LockSupport.unpark(w);
+    }
+
+    /**
+     * Lit le message de la position o et libère la case (message publié
+     * vérifié).
+     */
+    private Message dequeue(long o) {
+        int idx = (int) (o % buf.length);
+        Message m = buf[idx];
+        buf[idx] = null;
+        out.lazySet(o + 1);
+        Thread w = producerWaiter;
+        if (w != null)
+            LockSupport.unpark(w);
+        return m;
+    }
+
+    @Override
+    public int nmsg() {
+        long o = out.get();
+        long i = in.get();
+        return (int) Math.max(0, i - o);
+    }
+
+    @Override
+    public int totmsg() {
+        return (int) in.get();
+    }
+}
@@ -0,0 +1,334 @@
+package prodcons.v4;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Canal synchrone (capacité nulle) pour la version v4.
+ *
+ * Aucun message n'est stocké : un put() ne se termine que lorsqu'un
+ * consommateur a pris le message (rendez-vous, comme SynchronousQueue).
+ *
+ * Principe (double file d'attente) :
+ * - un producteur qui trouve un consommateur en attente lui remet le
+ * message directement ; sinon il s'inscrit dans la file producers avec son
+ * message et s'endort jusqu'à ce qu'un consommateur le prenne,
+ * - symétriquement, un consommateur prend le message du premier producteur
+ * inscrit, ou s'inscrit dans la file consumers et s'endort,
+ * - les deux files ne sont jamais non vides en même temps.
+ *
+ * Le verrou (équitable) ne protège que les files et les compteurs ; les
+ * threads s'endorment hors verrou (LockSupport.park) et celui qui réalise
+ * le rendez-vous réveille l'autre après avoir rendu le verrou.
+ *
+ * tryPut / tryGet ne réussissent que si un partenaire attend déjà ;
+ * offer / poll attendent un partenaire au plus le délai fourni.
+ *
+ * La terminaison suit le contrat buffer-centré de la v4 :
+ * setProducersCount(n), producerDone(), isClosed(), et get() renvoie
+ * null lorsque le canal est fermé (aucun producteur ne peut plus venir).
+ */
+public class SynchronousProdConsBuffer implements IProdConsBuffer {
+
+    /**
+     * Thread inscrit dans l'une des files, en attente de son partenaire.
+     */
+    private static final class Node {
+        final Thread thread;
+
+        /**
+         * Message déposé (producteur) ou reçu (consommateur).
+         */
+        volatile Message item;
+
+        /**
+         * Vrai lorsque le rendez-vous a eu lieu (écrit sous verrou).
+         */
+        volatile boolean matched;
+
+        Node(Thread thread, Message item) {
+            this.thread = thread;
+            this.item = item;
+        }
+    }
+
+    /**
+     * Producteurs endormis avec leur message, dans l'ordre d'arrivée.
+     */
+    private final ArrayDeque<Node> producers = new ArrayDeque<>();
+
+    /**
+     * Consommateurs endormis, dans l'ordre d'arrivée.
+     */
+    private final ArrayDeque<Node> consumers = new ArrayDeque<>();
+
+    /**
+     * Nombre total de messages transmis.
+     */
+    private int totalProduced = 0;
+
+    /**
+     * Nombre de producteurs n'ayant pas encore signalé leur fin.
+     */
+    private int producersRemaining = 0;
+
+    /**
+     * Vrai lorsque tous les producteurs ont appelé producerDone().
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Verrou protégeant les files et les compteurs.
+     */
+    private final ReentrantLock lock = new ReentrantLock(true);
+
+    @Override
+    public void setProducersCount(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n < 0");
+        lock.lock();
+        try {
+            this.producersRemaining = n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void producerDone() {
+        lock.lock();
+        try {
+            if (producersRemaining > 0) {
+                producersRemaining--;
+                if (producersRemaining == 0) {
+                    closed = true;
+                    // Aucun producteur ne viendra : réveiller les consommateurs.
+                    Node c;
+                    while ((c = consumers.poll()) != null)
+                        LockSupport.unpark(c.thread);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Remet m à un consommateur ; bloque jusqu'à ce qu'un consommateur
+     * l'ait pris.
+     */
+    @Override
+    public void put(Message m) throws InterruptedException {
+        transfer(m, false, 0L);
+    }
+
+    /**
+     * Prend le message d'un producteur ; bloque jusqu'à l'arrivée d'un
+     * producteur, ou renvoie null si le canal est fermé.
+     */
+    @Override
+    public Message get() throws InterruptedException {
+        return receive(false, 0L);
+    }
+
+    @Override
+    public boolean tryPut(Message m) {
+        Node c;
+        lock.lock();
+        try {
+            c = consumers.poll();
+            if (c == null)
+                return false;
+            match(c, m);
+        } finally {
+            lock.unlock();
+        }
+        LockSupport.unpark(c.thread);
+        return true;
+    }
+
+    @Override
+    public boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        return transfer(m, true, unit.toNanos(timeout));
+    }
+
+    @Override
+    public Message tryGet() {
+        Node p;
+        lock.lock();
+        try {
+            p = producers.poll();
+            if (p == null)
+                return null;
+            match(p, p.item);
+        } finally {
+            lock.unlock();
+        }
+        LockSupport.unpark(p.thread);
+        return p.item;
+    }
+
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return receive(true, unit.toNanos(timeout));
+    }
+
+    /**
+     * Côté producteur, commun à put et offer.
+     *
+     * @param timed true pour borner l'attente à nanos (offer)
+     * @return false si le délai a expiré sans qu'un consommateur prenne m
+     */
+    private boolean transfer(Message m, boolean timed, long nanos) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        Node c;
+        Node self;
+        lock.lock();
+        try {
+            c = consumers.poll();
+            if (c != null) {
+                match(c, m);
+                self = null;
+            } else {
+                if (timed && nanos <= 0)
+                    return false;
+                self = new Node(Thread.currentThread(), m);
+                producers.add(self);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (c != null) {
+            LockSupport.unpark(c.thread);
+            return true;
+        }
+        return awaitMatch(self, producers, timed, nanos);
+    }
+
+    /**
+     * Côté consommateur, commun à get et poll.
+     *
+     * @param timed true pour borner l'attente à nanos (poll)
+     * @return le message, ou null si le canal est fermé ou si le délai a
+     *         expiré
+     */
+    private Message receive(boolean timed, long nanos) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        Node p;
+        Node self;
+        lock.lock();
+        try {
+            p = producers.poll();
+            if (p != null) {
+                match(p, p.item);
+                self = null;
+            } else {
+                if (closed || (timed && nanos <= 0))
+                    return null;
+                self = new Node(Thread.currentThread(), null);
+                consumers.add(self);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (p != null) {
+            LockSupport.unpark(p.thread);
+            return p.item;
+        }
+        return awaitMatch(self, consumers, timed, nanos) ? self.item : null;
+    }
+
+    /**
+     * Réalise le rendez-vous avec le nœud n retiré de sa file (verrou tenu).
+     * L'appelant réveille n.thread après avoir rendu le verrou.
+     */
+    private void match(Node n, Message m) {
+        n.item = m;
+        n.matched = true;
+        totalProduced++;
+    }
+
+    /**
+     * Endort le thread courant (hors verrou) jusqu'au rendez-vous, au délai,
+     * à une interruption ou, pour un consommateur, à la fermeture.
+     * En cas d'abandon, le nœud est retiré de sa file sous verrou, sauf si
+     * le rendez-vous a eu lieu entre-temps.
+     *
+     * @param self  nœud du thread courant
+     * @param queue file dans laquelle self est inscrit
+     * @return true si le rendez-vous a eu lieu
+     */
+    private boolean awaitMatch(Node self, ArrayDeque<Node> queue, boolean timed, long nanos)
+            throws InterruptedException {
+        final boolean consumer = queue == consumers;
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        boolean interrupted = false;
+        while (!self.matched && !(consumer && closed)) {
+            if (Thread.interrupted()) {
+                interrupted = true;
+                break;
+            }
+            if (!timed) {
+                LockSupport.park(this);
+            } else {
+                nanos = deadline - System.nanoTime();
+                if (nanos <= 0)
+                    break;
+                LockSupport.parkNanos(this, nanos);
+            }
+        }
+
+        boolean matched = self.matched;
+        if (!matched) {
+            lock.lock();
+            try {
+                matched = self.matched;
+                if (!matched)
+                    queue.remove(self);
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (interrupted) {
+            if (!matched)
+                throw new InterruptedException();
+            // Rendez-vous déjà fait : on le rend effectif et on garde
+            // l'interruption pour l'appelant.
+            Thread.currentThread().interrupt();
+        }
+        return matched;
+    }
+
+    /**
+     * Nombre de messages déposés par des producteurs encore en attente
+     * d'un consommateur (aucun message n'est stocké au-delà).
+     */
+    @Override
+    public int nmsg() {
+        lock.lock();
+        try {
+            return producers.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int totmsg() {
+        lock.lock();
+        try {
+            return totalProduced;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package prodcons.v4;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test de l'API asynchrone de ProdConsBuffer (putAsync / getAsync).
+ *
+ * Scénarios :
+ * - un getAsync() annulé, ou expiré (orTimeout), est retiré de la file :
+ * le message suivant reste dans le buffer,
+ * - des putAsync() en attente sur un buffer plein entrent dans le buffer
+ * dans l'ordre FIFO à mesure que des cases se libèrent ; un putAsync()
+ * annulé avant d'être servi n'insère pas son message,
+ * - un getAsync() en attente est complété avec null par producerDone().
+ */
+public class TestAsyncProdCons {
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("===============================================");
+        System.out.println("[TEST v4-async] putAsync / getAsync");
+        boolean ok1 = withdrawnGets();
+        boolean ok2 = pendingPuts();
+        boolean ok3 = closeCompletesGets();
+        System.out.printf("  Test global                      = %s%n", (ok1 && ok2 && ok3) ? "SUCCÈS" : "ÉCHEC");
+        System.out.println("===============================================");
+    }
+
+    private static boolean withdrawnGets() throws Exception {
+        ProdConsBuffer buffer = new ProdConsBuffer(4);
+        Message m1 = new Message(1, 0);
+        Message m2 = new Message(2, 0);
+
+        CompletableFuture<Message> cancelled = buffer.getAsync();
+        cancelled.cancel(false);
+        buffer.put(m1);
+        boolean okCancel = cancelled.isCancelled() && buffer.nmsg() == 1 && buffer.tryGet() == m1;
+
+        CompletableFuture<Message> expired = buffer.getAsync().orTimeout(50, TimeUnit.MILLISECONDS);
+        try {
+            expired.join();
+        } catch (RuntimeException e) {
+            // TimeoutException attendue
+        }
+        buffer.put(m2);
+        boolean okTimeout = expired.isCompletedExceptionally() && buffer.nmsg() == 1
+                && buffer.tryGet() == m2;
+
+        System.out.printf("  getAsync annulé : message gardé  = %s%n", okCancel ? "OUI" : "NON");
+        System.out.printf("  getAsync expiré : message gardé  = %s%n", okTimeout ? "OUI" : "NON");
+        return okCancel && okTimeout;
+    }
+
+    private static boolean pendingPuts() throws Exception {
+        ProdConsBuffer buffer = new ProdConsBuffer(2);
+        Message[] m = new Message[6];
+        for (int i = 1; i < m.length; i++)
+            m[i] = new Message(i, 0);
+
+        buffer.put(m[1]);
+        buffer.put(m[2]);
+        CompletableFuture<Void> p3 = buffer.putAsync(m[3]);
+        CompletableFuture<Void> p4 = buffer.putAsync(m[4]);
+        CompletableFuture<Void> p5 = buffer.putAsync(m[5]);
+        boolean ok = !p3.isDone() && !p4.isDone() && !p5.isDone();
+        p5.cancel(false);
+
+        // Chaque case libérée fait entrer le plus ancien putAsync() en attente.
+        ok &= buffer.get() == m[1] && p3.isDone() && !p4.isDone();
+        ok &= buffer.get() == m[2] && p4.isDone();
+        ok &= buffer.get() == m[3] && buffer.get() == m[4];
+        ok &= p5.isCancelled() && buffer.nmsg() == 0 && buffer.totmsg() == 4;
+
+        System.out.printf("  putAsync servis en FIFO          = %s%n", ok ? "OUI" : "NON");
+        return ok;
+    }
+
+    private static boolean closeCompletesGets() throws Exception {
+        ProdConsBuffer buffer = new ProdConsBuffer(4);
+        buffer.setProducersCount(1);
+        CompletableFuture<Message> g = buffer.getAsync();
+        boolean ok = !g.isDone();
+        buffer.producerDone();
+        ok &= g.get(1, TimeUnit.SECONDS) == null;
+
+        System.out.printf("  getAsync -> null à producerDone  = %s%n", ok ? "OUI" : "NON");
+        return ok;
+    }
+}
@@ -0,0 +1,57 @@
+package prodcons.v4;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test de ponctualité du tampon différé (DelayProdConsBuffer).
+ *
+ * Scénario (tick de 10 ms) :
+ * - à t = 0, put(m1, 640 ms) : échéance à 64 ticks, rangée au niveau 1,
+ * - à t = 600 ms, put(m2, 620 ms) : échéance à 122 ticks, rangée au
+ * niveau 0,
+ * - un consommateur bloqué dans get() doit recevoir m1 vers 640 ms (la
+ * cascade du niveau 1 précède la case de m2), puis m2 vers 1220 ms.
+ *
+ * Chaque message doit être livré au plus tard un tick (plus une marge
+ * d'ordonnancement) après son échéance, jamais avant.
+ */
+public class TestDelayProdCons {
+
+    private static final long TICK_MS = 10;
+    private static final long SLACK_MS = 50;
+
+    public static void main(String[] args) throws Exception {
+        DelayProdConsBuffer buffer = new DelayProdConsBuffer(4, 0, TICK_MS, TimeUnit.MILLISECONDS);
+        buffer.setProducersCount(1);
+        long t0 = System.nanoTime();
+
+        Message m1 = new Message(1, 0);
+        Message m2 = new Message(2, 0);
+        buffer.put(m1, 640, TimeUnit.MILLISECONDS);
+        Thread.sleep(600);
+        long put2 = (System.nanoTime() - t0) / 1_000_000;
+        buffer.put(m2, 620, TimeUnit.MILLISECONDS);
+        buffer.producerDone();
+
+        long due1 = 640;
+        long due2 = put2 + 620;
+
+        Message first = buffer.get();
+        long at1 = (System.nanoTime() - t0) / 1_000_000;
+        Message second = buffer.get();
+        long at2 = (System.nanoTime() - t0) / 1_000_000;
+        Message end = buffer.get();
+
+        System.out.println("===============================================");
+        System.out.println("[TEST v4-delay] Cascade et attente du leader");
+        System.out.printf("  %s échéance %4d ms, livré à %4d ms%n", first, first == m1 ? due1 : due2, at1);
+        System.out.printf("  %s échéance %4d ms, livré à %4d ms%n", second, second == m1 ? due1 : due2, at2);
+        boolean okOrder = first == m1 && second == m2 && end == null;
+        boolean okTime = at1 >= due1 && at1 <= due1 + TICK_MS + SLACK_MS
+                && at2 >= due2 && at2 <= due2 + TICK_MS + SLACK_MS;
+        System.out.printf("  ordre des échéances           = %s%n", okOrder ? "OUI" : "NON");
+        System.out.printf("  livraison dans le tick        = %s%n", okTime ? "OUI" : "NON");
+        System.out.printf("  Test global                   = %s%n", (okOrder && okTime) ? "SUCCÈS" : "ÉCHEC");
+        System.out.println("===============================================");
+    }
+}
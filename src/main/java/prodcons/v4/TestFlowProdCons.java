@@ -0,0 +1,133 @@
+package prodcons.v4;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test des adaptateurs Flow (BufferSubscriber, BufferPublisher).
+ *
+ * Chaîne : SubmissionPublisher -> BufferSubscriber -> ProdConsBuffer ->
+ * BufferPublisher -> abonnés.
+ *
+ * Deux scénarios :
+ * - deux abonnés qui se partagent les messages, l'un demandant un message
+ * à la fois, l'autre par lots de BATCH,
+ * - un abonné seul dont la demande (request(TOTAL), une seule fois) est
+ * exactement le nombre de messages : sa demande est épuisée lorsque le
+ * buffer se ferme, il doit quand même recevoir onComplete.
+ *
+ * Chaque scénario vérifie que tous les messages sont reçus une seule fois,
+ * que chaque abonné reçoit onComplete (sans onError) et que le buffer est
+ * vide.
+ */
+public class TestFlowProdCons {
+
+    private static final int TOTAL = 500;
+    private static final int BATCH = 16;
+
+    /**
+     * Abonné qui demande first messages, puis redemande by messages
+     * chaque fois qu'il en a reçu autant (by = 0 : aucune autre demande).
+     */
+    private static final class Probe implements Flow.Subscriber<Message> {
+        final String name;
+        final long first;
+        final int by;
+        final Set<Integer> seen;
+        final AtomicInteger received = new AtomicInteger();
+        final CountDownLatch completed = new CountDownLatch(1);
+        volatile Throwable error;
+        private Flow.Subscription s;
+
+        Probe(String name, long first, int by, Set<Integer> seen) {
+            this.name = name;
+            this.first = first;
+            this.by = by;
+            this.seen = seen;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription s) {
+            this.s = s;
+            s.request(first);
+        }
+
+        @Override
+        public void onNext(Message m) {
+            seen.add(m.id);
+            int n = received.incrementAndGet();
+            if (by > 0 && n % by == 0)
+                s.request(by);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            completed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+
+        boolean ok() throws InterruptedException {
+            boolean done = completed.await(10, TimeUnit.SECONDS);
+            System.out.printf("  %-8s reçus = %3d, onComplete = %s%n", name, received.get(),
+                    done && error == null ? "OUI" : (error != null ? "NON (" + error + ")" : "NON"));
+            return done && error == null;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("===============================================");
+        System.out.println("[TEST v4-flow] SubmissionPublisher -> buffer -> BufferPublisher");
+
+        Set<Integer> seen1 = ConcurrentHashMap.newKeySet();
+        Probe one = new Probe("un-à-un", 1, 1, seen1);
+        Probe batch = new Probe("par-lots", BATCH, BATCH, seen1);
+        boolean ok1 = run(one, batch);
+
+        Set<Integer> seen2 = ConcurrentHashMap.newKeySet();
+        Probe exact = new Probe("exact", TOTAL, 0, seen2);
+        boolean ok2 = run(exact);
+
+        System.out.printf("  Test global = %s%n", (ok1 && ok2) ? "SUCCÈS" : "ÉCHEC");
+        System.out.println("===============================================");
+    }
+
+    /**
+     * Fait circuler TOTAL messages vers les abonnés donnés (qui partagent le
+     * même ensemble seen) et vérifie le résultat.
+     */
+    private static boolean run(Probe... probes) throws InterruptedException {
+        ProdConsBuffer buffer = new ProdConsBuffer(8);
+        buffer.setProducersCount(1);
+        BufferPublisher out = new BufferPublisher(buffer);
+        for (Probe p : probes)
+            out.subscribe(p);
+
+        try (SubmissionPublisher<Message> in = new SubmissionPublisher<>()) {
+            in.subscribe(new BufferSubscriber(buffer));
+            for (int i = 1; i <= TOTAL; i++)
+                in.submit(new Message(i, 0));
+        } // close() : onComplete -> producerDone()
+
+        boolean ok = true;
+        int total = 0;
+        for (Probe p : probes) {
+            ok &= p.ok();
+            total += p.received.get();
+        }
+        Set<Integer> seen = probes[0].seen;
+        boolean okCount = total == TOTAL && seen.size() == TOTAL;
+        System.out.printf("  total reçu = %d / %d (distincts = %d), nmsg = %d%n",
+                total, TOTAL, seen.size(), buffer.nmsg());
+        return ok && okCount && buffer.nmsg() == 0;
+    }
+}
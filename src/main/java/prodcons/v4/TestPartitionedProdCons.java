@@ -0,0 +1,61 @@
+package prodcons.v4;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test de la reprise d'une voie abandonnée (PartitionedProdConsBuffer).
+ *
+ * Scénario (une seule voie) :
+ * - C1 prend m1 par get() puis se termine sans appeler release() : il
+ * reste propriétaire de la voie,
+ * - C2 se bloque dans get(),
+ * - put(m2) doit réveiller C2 : la voie d'un thread terminé est libre.
+ */
+public class TestPartitionedProdCons {
+
+    public static void main(String[] args) throws Exception {
+        PartitionedProdConsBuffer buffer = new PartitionedProdConsBuffer(2, 1);
+        buffer.setProducersCount(1);
+        Message m1 = new Message(1, 0);
+        Message m2 = new Message(2, 0);
+        buffer.put(m1);
+
+        Message[] got = new Message[2];
+        Thread c1 = new Thread(() -> {
+            try {
+                got[0] = buffer.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "C-1");
+        c1.start();
+        c1.join();
+
+        Thread c2 = new Thread(() -> {
+            try {
+                got[1] = buffer.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "C-2");
+        c2.start();
+        // Laisse C2 s'endormir dans get() avant le dépôt.
+        Thread.sleep(200);
+        buffer.put(m2);
+        c2.join(TimeUnit.SECONDS.toMillis(2));
+        boolean woken = !c2.isAlive();
+        if (!woken)
+            c2.interrupt();
+        buffer.producerDone();
+
+        System.out.println("===============================================");
+        System.out.println("[TEST v4-partitioned] Voie d'un consommateur terminé");
+        System.out.printf("  C1 a reçu                     = %s%n", got[0]);
+        System.out.printf("  C2 réveillé par put(m2)       = %s%n", woken ? "OUI" : "NON");
+        System.out.printf("  C2 a reçu                     = %s%n", got[1]);
+        System.out.printf("  nmsg restant                  = %d%n", buffer.nmsg());
+        boolean ok = got[0] == m1 && woken && got[1] == m2 && buffer.nmsg() == 0;
+        System.out.printf("  Test global                   = %s%n", ok ? "SUCCÈS" : "ÉCHEC");
+        System.out.println("===============================================");
+    }
+}
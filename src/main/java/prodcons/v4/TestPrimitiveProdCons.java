@@ -0,0 +1,108 @@
+package prodcons.v4;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import prodcons.ThreadMode;
+
+/**
+ * Test du tampon primitif (PrimitiveProdConsBuffer) via son API sans
+ * allocation :
+ * - les producteurs appellent put(id, tid) sans créer de Message,
+ * - les consommateurs récupèrent des lots dans des tableaux int[] / long[]
+ * réutilisés d'un appel à l'autre.
+ *
+ * Les temps prodTime / consTime sont ignorés : le but est de faire circuler
+ * un grand nombre de messages et de vérifier les compteurs.
+ */
+public class TestPrimitiveProdCons {
+
+    public static void main(String[] args) throws Exception {
+        Properties p = new Properties();
+        try (InputStream in = TestPrimitiveProdCons.class.getResourceAsStream("/prodcons/options.xml")) {
+            if (in == null)
+                throw new IllegalStateException("prodcons/options.xml introuvable sur le classpath");
+            p.loadFromXML(in);
+        }
+
+        int nProd = Integer.parseInt(p.getProperty("nProd"));
+        int nCons = Integer.parseInt(p.getProperty("nCons"));
+        int bufSz = Integer.parseInt(p.getProperty("bufSz"));
+        int minProd = Integer.parseInt(p.getProperty("minProd"));
+        int maxProd = Integer.parseInt(p.getProperty("maxProd"));
+        int k = Integer.parseInt(p.getProperty("k"));
+        // Exécution des participants (voir prodcons.ThreadMode)
+        ThreadMode threadMode = ThreadMode.fromName(p.getProperty("threadMode", "platform"));
+
+        int[] quotas = new int[nProd];
+        int total = 0;
+        for (int i = 0; i < nProd; i++) {
+            quotas[i] = ThreadLocalRandom.current().nextInt(minProd, maxProd + 1);
+            total += quotas[i];
+        }
+        final int TOTAL = total;
+
+        PrimitiveProdConsBuffer buffer = new PrimitiveProdConsBuffer(bufSz);
+        buffer.setProducersCount(nProd);
+        AtomicInteger gen = new AtomicInteger(0);
+        AtomicInteger consumed = new AtomicInteger(0);
+
+        System.out.println("===============================================");
+        System.out.println("[TEST v4-primitive] put(id, tid) / get(int[], long[])");
+        System.out.printf("  nProd = %d, nCons = %d, bufSz = %d, lot = %d%n", nProd, nCons, bufSz, k);
+        System.out.printf("  threads = %s%n", threadMode);
+        System.out.printf("  TOTAL messages = %d%n", TOTAL);
+        System.out.println("===============================================");
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < nProd; i++) {
+            final int quota = quotas[i];
+            threads.add(new Thread(() -> {
+                long tid = Thread.currentThread().getId();
+                try {
+                    for (int j = 0; j < quota; j++)
+                        buffer.put(gen.incrementAndGet(), tid);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    buffer.producerDone();
+                }
+            }, "P-" + (i + 1)));
+        }
+        for (int i = 0; i < nCons; i++) {
+            threads.add(new Thread(() -> {
+                // Tableaux alloués une seule fois par consommateur
+                int[] ids = new int[k];
+                long[] tids = new long[k];
+                try {
+                    int n;
+                    while ((n = buffer.get(ids, tids)) > 0)
+                        consumed.addAndGet(n);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "C-" + (i + 1)));
+        }
+
+        long t0 = System.nanoTime();
+        Map<Thread, Thread> running = threadMode.startAll(threads);
+        for (Thread t : threads)
+            running.get(t).join();
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+
+        System.out.println("===============================================");
+        System.out.println("[TEST v4-primitive] Résumé final :");
+        System.out.printf("  totalProduced (buffer) = %d%n", buffer.totmsg());
+        System.out.printf("  consumed (compteur)    = %d%n", consumed.get());
+        System.out.printf("  nmsg restant dans buf  = %d%n", buffer.nmsg());
+        System.out.printf("  durée                  = %d ms%n", ms);
+        boolean ok = buffer.totmsg() == TOTAL && consumed.get() == TOTAL && buffer.nmsg() == 0;
+        System.out.printf("  Terminaison cohérente  = %s%n", ok ? "OUI" : "NON");
+        System.out.println("===============================================");
+    }
+}
@@ -5,6 +5,8 @@ import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import prodcons.ThreadMode;
+
 /**
  * Test de la version v4 du problème producteur-consommateur.
  *
@@ -33,6 +35,14 @@ public class TestProdCons {
         int consT = Integer.parseInt(p.getProperty("consTime"));
         int minProd = Integer.parseInt(p.getProperty("minProd"));
         int maxProd = Integer.parseInt(p.getProperty("maxProd"));
+        // Exécution des participants (voir prodcons.ThreadMode)
+        ThreadMode threadMode = ThreadMode.fromName(p.getProperty("threadMode", "platform"));
+        // Implémentation du tampon (voir ProdConsBufferFactory)
+        String bufImpl = p.getProperty("bufImpl", "lock");
+        // Stratégie d'attente (voir WaitStrategy)
+        WaitStrategy ws = WaitStrategy.fromName(p.getProperty("waitStrategy", "block"),
+                Integer.parseInt(p.getProperty("spinBudget",
+                        String.valueOf(WaitStrategy.DEFAULT_SPIN_BUDGET))));
 
         // Tirage des quotas de chaque producteur
         int[] quotas = new int[nProd];
@@ -44,9 +54,12 @@ public class TestProdCons {
         }
         final int TOTAL = total;
 
-        ProdConsBuffer buffer = new ProdConsBuffer(bufSz);
-        // Le buffer doit connaître le nombre total de producteurs
-        buffer.setProducersCount(nProd);
+        // La fabrique lit les paramètres propres à bufImpl et renseigne le
+        // nombre de producteurs attendus. Un tampon "mapped" peut contenir
+        // des messages d'une exécution précédente, consommés en plus de TOTAL.
+        IProdConsBuffer buffer = ProdConsBufferFactory.create(p, nProd, nCons, ws);
+        final int BACKLOG = buffer.nmsg();
+        final int INITIAL_TOT = buffer.totmsg();
         AtomicInteger consumed = new AtomicInteger(0);
 
         // Affichage de la configuration et des quotas
@@ -55,11 +68,16 @@ public class TestProdCons {
         System.out.printf("  nProd   = %d%n", nProd);
         System.out.printf("  nCons   = %d%n", nCons);
         System.out.printf("  bufSz   = %d%n", bufSz);
+        System.out.printf("  bufImpl = %s%n", bufImpl);
+        System.out.printf("  wait    = %s%n", ws);
         System.out.printf("  prodT   = %d ms%n", prodT);
         System.out.printf("  consT   = %d ms%n", consT);
         System.out.printf("  minProd = %d%n", minProd);
         System.out.printf("  maxProd = %d%n", maxProd);
+        System.out.printf("  threads = %s%n", threadMode);
         System.out.printf("  TOTAL messages (somme des quotas) = %d%n", TOTAL);
+        if (BACKLOG > 0)
+            System.out.printf("  messages repris d'une exécution précédente = %d%n", BACKLOG);
         System.out.println("  Quotas par producteur :");
         for (int i = 0; i < nProd; i++) {
             System.out.printf("    P-%d : %d messages%n", i + 1, quotas[i]);
@@ -104,17 +122,19 @@ public class TestProdCons {
 
         // Démarrage des threads dans un ordre mélangé pour maximiser la concurrence
         Collections.shuffle(all, new Random());
-        all.forEach(Thread::start);
+        // En mode virtuel, chaque participant s'exécute dans un thread
+        // virtuel : c'est ce thread que l'on rejoint.
+        Map<Thread, Thread> running = threadMode.startAll(all);
 
         // Joindre les producteurs (ils appelleront producerDone() à la fin)
         for (Thread t : producers) {
-            t.join();
+            running.get(t).join();
         }
 
         // Les consommateurs s'arrêteront automatiquement lorsque le buffer
         // sera fermé et vide : on les rejoint donc directement.
         for (Thread t : consumers) {
-            t.join();
+            running.get(t).join();
         }
 
         // Résumé final et vérification simple de cohérence
@@ -124,9 +144,18 @@ public class TestProdCons {
         System.out.printf("  totalProduced (buffer) = %d%n", buffer.totmsg());
         System.out.printf("  consumed (compteur)    = %d%n", consumed.get());
         System.out.printf("  nmsg restant dans buf  = %d%n", buffer.nmsg());
-        boolean ok = (buffer.totmsg() == TOTAL)
-                && (consumed.get() == TOTAL)
+        if (buffer instanceof ElasticProdConsBuffer)
+            System.out.printf("  capacité finale        = %d%n", ((ElasticProdConsBuffer) buffer).capacity());
+        int expired = 0;
+        if (buffer instanceof ExpiringProdConsBuffer) {
+            expired = ((ExpiringProdConsBuffer) buffer).expired();
+            System.out.printf("  messages périmés       = %d%n", expired);
+        }
+        boolean ok = (buffer.totmsg() - INITIAL_TOT == TOTAL)
+                && (consumed.get() + expired == TOTAL + BACKLOG)
                 && (buffer.nmsg() == 0);
+        if (buffer instanceof AutoCloseable)
+            ((AutoCloseable) buffer).close();
         System.out.printf("  Terminaison cohérente  = %s%n", ok ? "OUI" : "NON");
         System.out.println("== v4 terminé proprement (Locks et conditions) ==");
         System.out.println("===============================================");
@@ -0,0 +1,360 @@
+package prodcons.v4;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tampon borné à deux verrous pour la version v4.
+ *
+ * Reprend le schéma classique de la file à deux verrous :
+ * - putLock protège in et n'est pris que par les producteurs,
+ * - takeLock protège out et n'est pris que par les consommateurs,
+ * - le nombre de messages est un AtomicInteger partagé par les deux côtés.
+ *
+ * Producteurs et consommateurs ne se gênent donc plus : une rafale de put()
+ * ne retarde pas les get(). Les signaux croisés (un producteur qui réveille
+ * un consommateur, et inversement) ne sont émis qu'aux transitions
+ * vide -> non vide et plein -> non plein. Entre eux, les threads d'un même
+ * côté se réveillent en cascade (un put qui laisse de la place réveille le
+ * producteur suivant, un get qui laisse des messages réveille le
+ * consommateur suivant).
+ *
+ * Les deux verrous sont équitables, comme le verrou unique de ProdConsBuffer.
+ * Les attentes passent par une WaitStrategy (blocage immédiat par défaut).
+ * Les variantes à délai (offer / poll) attendent avec awaitNanos ;
+ * tryPut / tryGet n'attendent jamais.
+ */
+public class TwoLockProdConsBuffer implements IProdConsBuffer {
+
+    /**
+     * Buffer circulaire de stockage des messages.
+     */
+    private final Message[] buf;
+
+    /**
+     * Index de la prochaine écriture (protégé par putLock).
+     */
+    private int in = 0;
+
+    /**
+     * Index de la prochaine lecture (protégé par takeLock).
+     */
+    private int out = 0;
+
+    /**
+     * Nombre de messages présents. L'incrément (après écriture de la case)
+     * et la lecture (avant lecture de la case) assurent la visibilité des
+     * messages entre les deux verrous.
+     */
+    private final AtomicInteger count = new AtomicInteger(0);
+
+    /**
+     * Nombre total de messages produits (écrit sous putLock).
+     */
+    private volatile int totalProduced = 0;
+
+    /**
+     * Nombre de producteurs n'ayant pas encore signalé leur fin.
+     */
+    private int producersRemaining = 0;
+
+    /**
+     * Indique que tous les producteurs ont terminé (écrit sous takeLock).
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Verrou des producteurs.
+     */
+    private final ReentrantLock putLock = new ReentrantLock(true);
+
+    /**
+     * Condition "buffer pas plein", associée à putLock.
+     */
+    private final Condition notFull = putLock.newCondition();
+
+    /**
+     * Verrou des consommateurs.
+     */
+    private final ReentrantLock takeLock = new ReentrantLock(true);
+
+    /**
+     * Condition "buffer pas vide (ou fermé)", associée à takeLock.
+     */
+    private final Condition notEmpty = takeLock.newCondition();
+
+    /**
+     * Stratégie d'attente sur notFull / notEmpty.
+     */
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * Gardes relues sans verrou par la stratégie d'attente.
+     */
+    private final BooleanSupplier hasRoom;
+    private final BooleanSupplier hasMessageOrClosed;
+
+    /**
+     * Construit un tampon à deux verrous de capacité donnée.
+     *
+     * @param capacity taille maximale du buffer (strictement positive)
+     */
+    public TwoLockProdConsBuffer(int capacity) {
+        this(capacity, WaitStrategy.blocking());
+    }
+
+    /**
+     * Construit un tampon à deux verrous avec une stratégie d'attente.
+     *
+     * @param capacity     taille maximale du buffer (strictement positive)
+     * @param waitStrategy stratégie d'attente lorsque le buffer est plein / vide
+     */
+    public TwoLockProdConsBuffer(int capacity, WaitStrategy waitStrategy) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity <= 0");
+        if (waitStrategy == null)
+            throw new NullPointerException("waitStrategy == null");
+        this.buf = new Message[capacity];
+        this.waitStrategy = waitStrategy;
+        this.hasRoom = () -> count.get() < buf.length;
+        this.hasMessageOrClosed = () -> count.get() > 0 || closed;
+    }
+
+    @Override
+    public void setProducersCount(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n < 0");
+        takeLock.lock();
+        try {
+            this.producersRemaining = n;
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public void producerDone() {
+        // La fermeture concerne les consommateurs : on la gère sous takeLock.
+        takeLock.lock();
+        try {
+            if (producersRemaining > 0) {
+                producersRemaining--;
+                if (producersRemaining == 0) {
+                    closed = true;
+                    notEmpty.signalAll();
+                }
+            }
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void put(Message m) throws InterruptedException {
+        insert(m, false, 0L);
+    }
+
+    @Override
+    public Message get() throws InterruptedException {
+        return take(false, 0L);
+    }
+
+    @Override
+    public boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        return insert(m, true, unit.toNanos(timeout));
+    }
+
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return take(true, unit.toNanos(timeout));
+    }
+
+    @Override
+    public boolean tryPut(Message m) {
+        int c;
+        putLock.lock();
+        try {
+            if (count.get() == buf.length)
+                return false;
+            c = enqueue(m);
+        } finally {
+            putLock.unlock();
+        }
+        if (c == 0)
+            signalNotEmpty();
+        return true;
+    }
+
+    @Override
+    public Message tryGet() {
+        // Lecture sans verrou : inutile de prendre takeLock si rien n'est là.
+        if (count.get() == 0)
+            return null;
+        Message m;
+        int c;
+        takeLock.lock();
+        try {
+            if (count.get() == 0)
+                return null;
+            m = buf[out];
+            c = dequeue();
+        } finally {
+            takeLock.unlock();
+        }
+        if (c == buf.length)
+            signalNotFull();
+        return m;
+    }
+
+    /**
+     * Insertion commune à put et offer.
+     *
+     * @param timed true pour borner l'attente à nanos (offer), false pour
+     *              attendre via la WaitStrategy (put)
+     * @return false si le délai a expiré avec un buffer toujours plein
+     */
+    private boolean insert(Message m, boolean timed, long nanos) throws InterruptedException {
+        int c;
+        if (timed)
+            putLock.lockInterruptibly();
+        else
+            putLock.lock();
+        try {
+            while (count.get() == buf.length) {
+                if (!timed) {
+                    waitStrategy.await(putLock, notFull, hasRoom);
+                } else {
+                    if (nanos <= 0)
+                        return false;
+                    nanos = notFull.awaitNanos(nanos);
+                }
+            }
+            c = enqueue(m);
+        } finally {
+            putLock.unlock();
+        }
+
+        // Transition vide -> non vide : seul cas où l'on réveille un consommateur.
+        if (c == 0)
+            signalNotEmpty();
+        return true;
+    }
+
+    /**
+     * Retrait commun à get et poll.
+     *
+     * @param timed true pour borner l'attente à nanos (poll), false pour
+     *              attendre via la WaitStrategy (get)
+     * @return le message, ou null si le buffer est fermé et vide ou si le
+     *         délai a expiré
+     */
+    private Message take(boolean timed, long nanos) throws InterruptedException {
+        Message m;
+        int c;
+        if (timed)
+            takeLock.lockInterruptibly();
+        else
+            takeLock.lock();
+        try {
+            while (count.get() == 0 && !closed) {
+                if (!timed) {
+                    waitStrategy.await(takeLock, notEmpty, hasMessageOrClosed);
+                } else {
+                    if (nanos <= 0)
+                        return null;
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+            }
+
+            // Sortie de boucle avec un buffer vide : il est fermé.
+            if (count.get() == 0)
+                return null;
+
+            m = buf[out];
+            c = dequeue();
+        } finally {
+            takeLock.unlock();
+        }
+
+        // Transition plein -> non plein : seul cas où l'on réveille un producteur.
+        if (c == buf.length)
+            signalNotFull();
+        return m;
+    }
+
+    /**
+     * Écrit m dans la case in (putLock tenu, buffer non plein).
+     *
+     * @return nombre de messages avant l'insertion
+     */
+    private int enqueue(Message m) {
+        buf[in] = m;
+        in = (in + 1) % buf.length;
+        totalProduced++;
+        int c = count.getAndIncrement();
+
+        // Il reste de la place : réveil en cascade du producteur suivant.
+        if (c + 1 < buf.length)
+            notFull.signal();
+        return c;
+    }
+
+    /**
+     * Libère la case out, dont le message a déjà été lu par l'appelant
+     * (takeLock tenu, buffer non vide).
+     *
+     * @return nombre de messages avant le retrait
+     */
+    private int dequeue() {
+        buf[out] = null;
+        out = (out + 1) % buf.length;
+        int c = count.getAndDecrement();
+
+        // Il reste des messages : réveil en cascade du consommateur suivant.
+        if (c > 1)
+            notEmpty.signal();
+        return c;
+    }
+
+    @Override
+    public int nmsg() {
+        return count.get();
+    }
+
+    @Override
+    public int totmsg() {
+        return totalProduced;
+    }
+
+    /**
+     * Réveille un consommateur (appelé par un producteur, hors putLock).
+     */
+    private void signalNotEmpty() {
+        takeLock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    /**
+     * Réveille un producteur (appelé par un consommateur, hors takeLock).
+     */
+    private void signalNotFull() {
+        putLock.lock();
+        try {
+            notFull.signal();
+        } finally {
+            putLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package prodcons.v4;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Stratégie d'attente utilisée par les tampons lorsqu'une garde est fausse
+ * (buffer plein côté producteur, buffer vide côté consommateur).
+ *
+ * Quatre stratégies, du plus économe en CPU au plus réactif :
+ * - "block" : Condition.await() immédiat (comportement historique),
+ * - "park" : attente active bornée (spinBudget tours) puis Condition.await(),
+ * - "yield" : attente active bornée puis Thread.yield() en boucle,
+ * - "spin" : attente active pure (Thread.onSpinWait()), jamais bloquante.
+ *
+ * L'attente active se fait verrou relâché, en relisant l'état du tampon
+ * (les champs lus par la garde doivent donc être volatile). Elle évite les
+ * quelques microsecondes de réveil d'un thread endormi lorsque l'autre côté
+ * n'a que quelques nanosecondes de retard, au prix de CPU consommé.
+ */
+public final class WaitStrategy {
+
+    /**
+     * Budget d'attente active par défaut (nombre de tours).
+     */
+    public static final int DEFAULT_SPIN_BUDGET = 1000;
+
+    /**
+     * Comportement une fois le budget d'attente active épuisé.
+     */
+    private enum Kind {
+        BLOCK, PARK, YIELD, SPIN
+    }
+
+    private static final WaitStrategy BLOCKING = new WaitStrategy(Kind.BLOCK, 0);
+
+    private final Kind kind;
+
+    /**
+     * Nombre de tours d'attente active avant de céder / bloquer.
+     */
+    private final int spinBudget;
+
+    private WaitStrategy(Kind kind, int spinBudget) {
+        if (spinBudget < 0)
+            throw new IllegalArgumentException("spinBudget < 0");
+        this.kind = kind;
+        this.spinBudget = spinBudget;
+    }
+
+    /**
+     * @return stratégie bloquante (Condition.await() immédiat)
+     */
+    public static WaitStrategy blocking() {
+        return BLOCKING;
+    }
+
+    /**
+     * @return stratégie d'attente active pure
+     */
+    public static WaitStrategy busySpin() {
+        return new WaitStrategy(Kind.SPIN, 0);
+    }
+
+    /**
+     * @param spinBudget nombre de tours d'attente active avant Thread.yield()
+     * @return stratégie attente active puis yield
+     */
+    public static WaitStrategy spinThenYield(int spinBudget) {
+        return new WaitStrategy(Kind.YIELD, spinBudget);
+    }
+
+    /**
+     * @param spinBudget nombre de tours d'attente active avant de bloquer
+     * @return stratégie attente active puis blocage sur la condition
+     */
+    public static WaitStrategy spinThenPark(int spinBudget) {
+        return new WaitStrategy(Kind.PARK, spinBudget);
+    }
+
+    /**
+     * Construit une stratégie à partir de son nom (clé waitStrategy de
+     * options.xml).
+     *
+     * @param name       "block", "park", "yield" ou "spin"
+     * @param spinBudget nombre de tours d'attente active (park / yield)
+     * @return la stratégie correspondante
+     * @throws IllegalArgumentException si le nom est inconnu
+     */
+    public static WaitStrategy fromName(String name, int spinBudget) {
+        switch (name) {
+            case "block":
+                return blocking();
+            case "park":
+                return spinThenPark(spinBudget);
+            case "yield":
+                return spinThenYield(spinBudget);
+            case "spin":
+                return busySpin();
+            default:
+                throw new IllegalArgumentException("waitStrategy inconnue : " + name);
+        }
+    }
+
+    /**
+     * Attente active sans verrou jusqu'à ce que ready soit vraie.
+     *
+     * @param ready garde à surveiller (lecture sans verrou)
+     * @return true si la garde est devenue vraie, false si le budget est
+     *         épuisé et que l'appelant doit bloquer
+     * @throws InterruptedException si le thread est interrompu pendant
+     *                              l'attente
+     */
+    public boolean spin(BooleanSupplier ready) throws InterruptedException {
+        for (int i = 0; kind == Kind.SPIN || i < spinBudget; i++) {
+            if (ready.getAsBoolean())
+                return true;
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            Thread.onSpinWait();
+        }
+        if (kind == Kind.YIELD) {
+            while (!ready.getAsBoolean()) {
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                Thread.yield();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Attend que la garde d'un tampon verrouillé puisse être vraie.
+     *
+     * À appeler verrou tenu, garde fausse, dans la boucle while habituelle :
+     * la méthode rend la main verrou tenu et l'appelant re-teste sa garde.
+     * Les stratégies non bloquantes relâchent le verrou pendant l'attente
+     * active ; la stratégie "park" finit sur cond.await() si la garde est
+     * toujours fausse, les signaux du tampon restant donc nécessaires.
+     *
+     * @param lock  verrou du tampon (tenu par l'appelant)
+     * @param cond  condition associée à la garde
+     * @param ready garde (lecture sans verrou)
+     * @throws InterruptedException si le thread est interrompu pendant
+     *                              l'attente
+     */
+    public void await(ReentrantLock lock, Condition cond, BooleanSupplier ready)
+            throws InterruptedException {
+        if (kind != Kind.BLOCK) {
+            boolean ok;
+            lock.unlock();
+            try {
+                ok = spin(ready);
+            } finally {
+                lock.lock();
+            }
+            if (ok || ready.getAsBoolean())
+                return;
+        }
+        cond.await();
+    }
+
+    @Override
+    public String toString() {
+        return kind.name().toLowerCase() + (kind == Kind.PARK || kind == Kind.YIELD ? "(" + spinBudget + ")" : "");
+    }
+}
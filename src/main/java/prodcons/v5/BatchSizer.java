@@ -0,0 +1,105 @@
+package prodcons.v5;
+
+/**
+ * Taille de lot adaptative pour les consommateurs v5 (AIMD).
+ *
+ * Chaque consommateur possède son propre BatchSizer. Après chaque lot, il
+ * lui transmet ce qu'il a observé :
+ * - le temps passé dans get() pour obtenir le lot,
+ * - le nombre de messages restant dans le tampon (nmsg()).
+ *
+ * Règle d'ajustement (augmentation additive, diminution multiplicative) :
+ * - si l'obtention du lot a pris plus que targetWaitNanos, le tampon est
+ * trop peu rempli pour cette taille de lot : k est divisé par deux ;
+ * - sinon, s'il reste des messages en attente après le lot, le tampon est
+ * profond : k augmente de 1 ;
+ * - sinon k ne change pas.
+ * k reste toujours dans [kMin, kMax].
+ *
+ * Un BatchSizer fixe (kMin == kMax) reproduit le comportement historique
+ * d'un k constant.
+ */
+public final class BatchSizer {
+
+    private final int kMin;
+    private final int kMax;
+
+    /**
+     * Temps d'obtention d'un lot au-delà duquel on réduit k.
+     */
+    private final long targetWaitNanos;
+
+    /**
+     * Taille de lot courante.
+     */
+    private int k;
+
+    /**
+     * Construit un BatchSizer adaptatif.
+     *
+     * @param kInit           taille initiale (ramenée dans [kMin, kMax])
+     * @param kMin            taille minimale (strictement positive)
+     * @param kMax            taille maximale (kMax >= kMin)
+     * @param targetWaitNanos temps d'obtention d'un lot visé, en nanosecondes
+     */
+    public BatchSizer(int kInit, int kMin, int kMax, long targetWaitNanos) {
+        if (kMin <= 0)
+            throw new IllegalArgumentException("kMin <= 0");
+        if (kMax < kMin)
+            throw new IllegalArgumentException("kMax < kMin");
+        if (targetWaitNanos < 0)
+            throw new IllegalArgumentException("targetWaitNanos < 0");
+        this.kMin = kMin;
+        this.kMax = kMax;
+        this.targetWaitNanos = targetWaitNanos;
+        this.k = Math.max(kMin, Math.min(kMax, kInit));
+    }
+
+    /**
+     * @return un BatchSizer dont la taille reste k
+     */
+    public static BatchSizer fixed(int k) {
+        return new BatchSizer(k, k, k, 0);
+    }
+
+    /**
+     * @return taille du prochain lot à demander
+     */
+    public int next() {
+        return k;
+    }
+
+    /**
+     * @return taille maximale d'un lot (taille du tableau à allouer)
+     */
+    public int max() {
+        return kMax;
+    }
+
+    /**
+     * @return true si la taille peut varier (kMin < kMax)
+     */
+    public boolean isAdaptive() {
+        return kMin < kMax;
+    }
+
+    /**
+     * Met à jour k après un lot.
+     *
+     * @param waitNanos temps passé à obtenir le lot
+     * @param backlog   nombre de messages restant dans le tampon après le lot
+     */
+    public void record(long waitNanos, int backlog) {
+        if (waitNanos > targetWaitNanos)
+            k = Math.max(kMin, k / 2);
+        else if (backlog > 0)
+            k = Math.min(kMax, k + 1);
+    }
+
+    @Override
+    public String toString() {
+        return isAdaptive()
+                ? "adaptatif [" + kMin + ", " + kMax + "] k=" + k
+                : "fixe k=" + k;
+    }
+}
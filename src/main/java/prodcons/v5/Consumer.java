@@ -1,15 +1,19 @@
 package prodcons.v5;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Consommateur pour la version v5.
  *
  * Particularité : ce consommateur ne lit pas un message à la fois,
- * mais des lots de k messages via get(k).
+ * mais des lots de k messages via get(Message[], k, k), dans un tableau
+ * réutilisé d'un lot à l'autre (aucune allocation par lot).
+ * En mode adaptatif, k varie d'un lot à l'autre selon la profondeur du
+ * tampon et le temps d'obtention des lots (voir BatchSizer).
  *
  * La boucle principale continue tant que le thread n'est pas interrompu.
- * Lorsque get(k) renvoie un tableau de taille 0, cela signifie que :
+ * Lorsque get renvoie 0 message, cela signifie que :
  * - la production est terminée,
  * - le buffer a été entièrement vidé.
  * Dans ce cas, le consommateur se termine proprement.
@@ -28,11 +32,19 @@ public class Consumer extends Thread {
     private final int consTimeMs;
 
     /**
-     * Taille des lots de consommation (paramètre k de get(k)).
+     * Taille des lots de consommation (paramètre k de get(k) / get(dst, k, k)).
      * Ce n'est pas forcément la taille du buffer physique, mais la
-     * taille cible logique des batchs consommés.
+     * taille cible logique des batchs consommés. Fixe par défaut, ou ajustée
+     * après chaque lot en mode adaptatif (voir BatchSizer).
      */
-    private final int k;
+    private final BatchSizer sizer;
+
+    /**
+     * Latence maximale d'un lot en millisecondes (0 = pas de borne) :
+     * si le plus ancien message du lot a attendu plus longtemps, le lot est
+     * rendu incomplet via get(dst, k, k, lingerMs, MILLISECONDS).
+     */
+    private final int lingerMs;
 
     /**
      * Compteur global du nombre total de messages consommés par tous
@@ -50,31 +62,80 @@ public class Consumer extends Thread {
      * @param consumed   compteur global des messages consommés
      */
     public Consumer(int cid, IProdConsBuffer buffer, int consTimeMs, int k, AtomicInteger consumed) {
+        this(cid, buffer, consTimeMs, k, 0, consumed);
+    }
+
+    /**
+     * Construit un consommateur par lots de k messages à latence bornée.
+     *
+     * @param cid        identifiant logique pour le nom du thread
+     * @param buffer     tampon partagé
+     * @param consTimeMs temps de "traitement" après chaque lot
+     * @param k          taille cible des lots de messages
+     * @param lingerMs   latence maximale d'un lot en ms (0 = pas de borne)
+     * @param consumed   compteur global des messages consommés
+     */
+    public Consumer(int cid, IProdConsBuffer buffer, int consTimeMs, int k, int lingerMs,
+            AtomicInteger consumed) {
+        this(cid, buffer, consTimeMs, BatchSizer.fixed(k), lingerMs, consumed);
+    }
+
+    /**
+     * Construit un consommateur dont la taille de lot est donnée par un
+     * BatchSizer (propre à ce consommateur).
+     *
+     * @param cid        identifiant logique pour le nom du thread
+     * @param buffer     tampon partagé
+     * @param consTimeMs temps de "traitement" après chaque lot
+     * @param sizer      taille des lots, fixe ou adaptative
+     * @param lingerMs   latence maximale d'un lot en ms (0 = pas de borne)
+     * @param consumed   compteur global des messages consommés
+     */
+    public Consumer(int cid, IProdConsBuffer buffer, int consTimeMs, BatchSizer sizer, int lingerMs,
+            AtomicInteger consumed) {
         super("C-" + cid);
+        if (lingerMs < 0)
+            throw new IllegalArgumentException("lingerMs < 0");
         this.buffer = buffer;
         this.consTimeMs = consTimeMs;
-        this.k = k;
+        this.sizer = sizer;
+        this.lingerMs = lingerMs;
         this.consumed = consumed;
     }
 
     @Override
     public void run() {
-        while (!isInterrupted()) {
+        // Tableau de lot alloué une seule fois et réutilisé à chaque appel
+        // (taille maximale des lots en mode adaptatif)
+        Message[] batch = new Message[sizer.max()];
+        // Thread courant (et non this) : en mode threadMode=virtual, run()
+        // s'exécute dans un thread virtuel distinct du Consumer.
+        while (!Thread.currentThread().isInterrupted()) {
             try {
-                // Récupère un lot de k messages (ou moins en fin de production)
-                Message[] batch = buffer.get(k);
+                // Récupère un lot de k messages (ou moins en fin de production,
+                // ou lorsque le plus ancien message a attendu plus de lingerMs)
+                int k = sizer.next();
+                long t0 = System.nanoTime();
+                int n = lingerMs > 0
+                        ? buffer.get(batch, k, k, lingerMs, TimeUnit.MILLISECONDS)
+                        : buffer.get(batch, k, k);
 
                 // Convention v5 :
-                // - taille > 0 : il reste des messages à traiter
-                // - taille == 0 : production terminée et buffer vidé → fin du consommateur
-                if (batch.length == 0) {
+                // - n > 0 : il reste des messages à traiter
+                // - n == 0 : production terminée et buffer vidé → fin du consommateur
+                if (n == 0) {
                     // Fin de production et tampon vidé :
-                    // get(k) signale la fin en renvoyant un lot vide.
+                    // get(dst, k, k) signale la fin en renvoyant 0.
+                    if (sizer.isAdaptive())
+                        Log.info("%s finished, batch size %s", getName(), sizer);
                     return;
                 }
 
+                // Ajustement de la taille du prochain lot
+                sizer.record(System.nanoTime() - t0, buffer.nmsg());
+
                 // Mise à jour du compteur global
-                consumed.addAndGet(batch.length);
+                consumed.addAndGet(n);
 
                 // Simule du temps de traitement sur le lot
                 Thread.sleep(consTimeMs);
@@ -1,11 +1,20 @@
 package prodcons.v5;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Interface du tampon ProdCons pour la version v5.
  *
  * Nouveauté par rapport aux versions précédentes :
  * - ajout de get(int k) qui permet de récupérer un lot de k messages
- * consécutifs.
+ * consécutifs,
+ * - ajout de putAll(Message[]) qui insère un lot de messages côté producteur,
+ * - variantes sans allocation get(Message[], min, max) et drainTo(Message[], max)
+ * qui remplissent un tableau fourni par le consommateur,
+ * - lots à latence bornée get(k, maxWait, unit) : un lot partiel est rendu
+ * lorsque son plus ancien message a trop attendu,
+ * - variantes sans attente (tryPut, tryGet, tryPutAll, drainTo) et à délai
+ * (offer, poll, offerAll, poll par lot).
  * En v5, le buffer gère la terminaison via :
  * - un nombre de producteurs attendu (initialisé par setProducersCount(int)),
  * - un appel producerDone() par chaque producteur à sa fin,
@@ -25,6 +34,37 @@ public interface IProdConsBuffer {
      */
     void put(Message m) throws InterruptedException;
 
+    /**
+     * Insère tous les messages du tableau (ordre FIFO), équivalent à
+     * putAll(batch, 0, batch.length).
+     *
+     * @param batch messages à insérer
+     * @throws InterruptedException si le thread producteur est interrompu
+     *                              pendant l'attente
+     */
+    void putAll(Message[] batch) throws InterruptedException;
+
+    /**
+     * Insère les messages batch[off] .. batch[off + len - 1] (ordre FIFO).
+     *
+     * Pendant chaque prise du verrou, on insère autant de messages que le
+     * buffer peut en accueillir, avec un seul réveil des consommateurs ;
+     * on ne bloque que pour le reste du lot, lorsque le buffer est plein.
+     * Les messages d'un même lot restent consécutifs vis-à-vis des autres
+     * producteurs tant qu'ils tiennent dans la place libre ; sinon d'autres
+     * messages peuvent s'intercaler entre deux morceaux du lot.
+     *
+     * En cas d'interruption, les messages déjà insérés restent dans le buffer.
+     *
+     * @param batch tableau source
+     * @param off   indice du premier message à insérer
+     * @param len   nombre de messages à insérer
+     * @throws InterruptedException      si le thread producteur est interrompu
+     *                                   pendant l'attente
+     * @throws IndexOutOfBoundsException si off / len sortent du tableau
+     */
+    void putAll(Message[] batch, int off, int len) throws InterruptedException;
+
     /**
      * Récupère un message (FIFO).
      *
@@ -39,6 +79,96 @@ public interface IProdConsBuffer {
      */
     Message get() throws InterruptedException;
 
+    /**
+     * Insère un message sans attendre.
+     *
+     * @param m message à ajouter
+     * @return true si le message a été inséré, false si le tampon est plein
+     */
+    boolean tryPut(Message m);
+
+    /**
+     * Insère un message en attendant au plus timeout qu'une place se libère.
+     *
+     * @param m       message à ajouter
+     * @param timeout délai maximal d'attente
+     * @param unit    unité de timeout
+     * @return true si le message a été inséré, false si le délai a expiré
+     * @throws InterruptedException si le thread est interrompu pendant l'attente
+     */
+    boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Retire un message sans attendre.
+     *
+     * @return le message retiré, ou null si le tampon est vide
+     *         (isClosed() distingue un tampon momentanément vide d'un
+     *         tampon terminé)
+     */
+    Message tryGet();
+
+    /**
+     * Retire un message en attendant au plus timeout qu'un message arrive.
+     *
+     * @param timeout délai maximal d'attente
+     * @param unit    unité de timeout
+     * @return le message retiré, ou null si le délai a expiré ou si le
+     *         tampon est fermé et vide
+     * @throws InterruptedException si le thread est interrompu pendant l'attente
+     */
+    Message poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Insère sans attendre autant de messages de batch[off ..] que la place
+     * libre le permet (un seul réveil des consommateurs).
+     *
+     * @param batch tableau source
+     * @param off   indice du premier message à insérer
+     * @param len   nombre de messages proposés
+     * @return nombre de messages insérés, de 0 à len ; les suivants restent
+     *         à la charge de l'appelant
+     * @throws IndexOutOfBoundsException si off / len sortent du tableau
+     */
+    int tryPutAll(Message[] batch, int off, int len);
+
+    /**
+     * Comme putAll(batch, off, len), mais abandonne lorsque le délai est
+     * écoulé.
+     *
+     * @param batch   tableau source
+     * @param off     indice du premier message à insérer
+     * @param len     nombre de messages proposés
+     * @param timeout délai maximal d'attente pour l'ensemble du lot
+     * @param unit    unité de timeout
+     * @return nombre de messages insérés avant l'expiration du délai (len si
+     *         tout le lot a été inséré)
+     * @throws InterruptedException      si le thread est interrompu pendant
+     *                                   l'attente
+     * @throws IndexOutOfBoundsException si off / len sortent du tableau
+     */
+    int offerAll(Message[] batch, int off, int len, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Comme get(dst, min, max), mais attend au plus timeout pour l'ensemble
+     * du lot : à l'expiration du délai, renvoie ce qui a été obtenu (de 0 à
+     * min - 1 messages). La variante sans attente est drainTo(dst, max).
+     *
+     * @param dst     tableau destination
+     * @param min     nombre de messages visé (strictement positif)
+     * @param max     nombre maximal de messages copiés
+     *                (min <= max <= dst.length)
+     * @param timeout délai maximal d'attente
+     * @param unit    unité de timeout
+     * @return nombre n de messages copiés ; 0 si le délai a expiré sans
+     *         message ou si la production est terminée et le tampon vide
+     *         (isClosed() distingue les deux cas)
+     * @throws InterruptedException     si le thread est interrompu pendant
+     *                                  l'attente
+     * @throws IllegalArgumentException si min <= 0, max < min ou
+     *                                  max > dst.length
+     */
+    int poll(Message[] dst, int min, int max, long timeout, TimeUnit unit) throws InterruptedException;
+
     /**
      * Récupère k messages consécutifs (FIFO).
      *
@@ -59,6 +189,81 @@ public interface IProdConsBuffer {
      */
     Message[] get(int k) throws InterruptedException;
 
+    /**
+     * Variante sans allocation de get(k) : copie les messages dans un
+     * tableau fourni (et réutilisable) par le consommateur.
+     *
+     * Attend d'avoir obtenu au moins min messages, puis en prend au plus max
+     * (tout ce qui est disponible dans cette limite). Si la production se
+     * termine avant, renvoie ce qui a pu être récupéré.
+     *
+     * Les messages sont écrits dans dst[0] .. dst[n - 1] ; le reste du
+     * tableau n'est pas modifié.
+     *
+     * @param dst tableau destination
+     * @param min nombre minimal de messages attendus (strictement positif)
+     * @param max nombre maximal de messages copiés (min <= max <= dst.length)
+     * @return nombre n de messages copiés ; 0 si la production est terminée
+     *         et que le tampon est vide
+     * @throws InterruptedException     si le thread consommateur est interrompu
+     *                                  pendant l'attente
+     * @throws IllegalArgumentException si min <= 0, max < min ou
+     *                                  max > dst.length
+     */
+    int get(Message[] dst, int min, int max) throws InterruptedException;
+
+    /**
+     * Récupère jusqu'à k messages consécutifs (FIFO) avec une latence bornée.
+     *
+     * Rend la main dès que k messages sont réunis, ou dès que le plus ancien
+     * message du lot a attendu plus de maxWait depuis son insertion dans le
+     * tampon (lot partiel), ou en fin de production. Tant que le lot est
+     * vide, l'attente n'est pas bornée : il n'y a encore aucun message dont
+     * la latence serait à protéger.
+     *
+     * @param k       taille cible du lot (doit être strictement positive)
+     * @param maxWait attente maximale du plus ancien message du lot
+     * @param unit    unité de maxWait
+     * @return un tableau de 0 à k messages (0 : production terminée et
+     *         tampon vide)
+     * @throws InterruptedException     si le thread consommateur est interrompu
+     *                                  pendant l'attente
+     * @throws IllegalArgumentException si k <= 0 ou maxWait < 0
+     */
+    Message[] get(int k, long maxWait, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Variante sans allocation de get(k, maxWait, unit) : comme
+     * get(dst, min, max), mais rend aussi un lot partiel (d'au moins un
+     * message) lorsque le plus ancien message du lot a attendu plus de
+     * maxWait.
+     *
+     * @param dst     tableau destination
+     * @param min     nombre de messages visé (strictement positif)
+     * @param max     nombre maximal de messages copiés
+     *                (min <= max <= dst.length)
+     * @param maxWait attente maximale du plus ancien message du lot
+     * @param unit    unité de maxWait
+     * @return nombre n de messages copiés ; 0 si la production est terminée
+     *         et que le tampon est vide
+     * @throws InterruptedException     si le thread consommateur est interrompu
+     *                                  pendant l'attente
+     * @throws IllegalArgumentException si min <= 0, max < min,
+     *                                  max > dst.length ou maxWait < 0
+     */
+    int get(Message[] dst, int min, int max, long maxWait, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Retire sans attendre jusqu'à max messages déjà présents et les copie
+     * dans dst[0] .. dst[n - 1].
+     *
+     * @param dst tableau destination
+     * @param max nombre maximal de messages copiés (0 <= max <= dst.length)
+     * @return nombre n de messages copiés (0 si le tampon est vide)
+     * @throws IllegalArgumentException si max < 0 ou max > dst.length
+     */
+    int drainTo(Message[] dst, int max);
+
     /**
      * Nombre de messages actuellement présents dans le buffer.
      * Méthode prévue pour l'observation / les statistiques.
@@ -76,5 +281,23 @@ public interface IProdConsBuffer {
      */
     int totmsg();
 
+    /**
+     * Informe le buffer du nombre total de producteurs attendus.
+     * Avec n == 0, le buffer est fermé immédiatement.
+     *
+     * @param n nombre de producteurs (positif ou nul)
+     */
+    void setProducersCount(int n);
 
+    /**
+     * Appelée par chaque producteur (en finally) lorsqu'il a terminé.
+     * Quand le dernier producteur a signalé sa fin, le buffer est fermé
+     * et les consommateurs bloqués sont réveillés.
+     */
+    void producerDone();
+
+    /**
+     * @return true si tous les producteurs ont signalé leur fin
+     */
+    boolean isClosed();
 }
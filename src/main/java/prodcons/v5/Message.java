@@ -6,7 +6,9 @@ package prodcons.v5;
  * Un message contient :
  * - un identifiant logique (id) généralement unique dans l'exécution,
  * - l'identifiant du thread producteur qui l'a créé (producerTid),
- * ce qui permet de tracer quelle instance de Producer a généré ce message.
+ * ce qui permet de tracer quelle instance de Producer a généré ce message,
+ * - une priorité (0 par défaut, plus grande = plus urgente), utilisée par
+ * PriorityProdConsBuffer et ignorée par les tampons FIFO.
  *
  * La méthode toString fournit une représentation compacte adaptée aux logs.
  */
@@ -25,11 +27,29 @@ public class Message {
     public final long producerTid;
 
     /**
-     * Construit un message avec un identifiant et l'id du thread producteur.
+     * Priorité du message (0 = normale, plus grande = plus urgente).
+     */
+    public final int priority;
+
+    /**
+     * Construit un message avec un identifiant et l'id du thread producteur,
+     * de priorité 0.
      */
     public Message(int id, long producerTid) {
+        this(id, producerTid, 0);
+    }
+
+    /**
+     * Construit un message avec une priorité.
+     *
+     * @param priority priorité (positive ou nulle)
+     */
+    public Message(int id, long producerTid, int priority) {
+        if (priority < 0)
+            throw new IllegalArgumentException("priority < 0");
         this.id = id;
         this.producerTid = producerTid;
+        this.priority = priority;
     }
 
     /**
@@ -37,6 +57,6 @@ public class Message {
      */
     @Override
     public String toString() {
-        return "M#" + id + "(P" + producerTid + ")";
+        return "M#" + id + "(P" + producerTid + (priority > 0 ? ", prio " + priority : "") + ")";
     }
 }
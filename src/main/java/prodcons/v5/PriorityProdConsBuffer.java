@@ -0,0 +1,617 @@
+package prodcons.v5;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tampon ProdCons à priorités pour la version v5.
+ *
+ * Le tampon contient un buffer circulaire par niveau de priorité
+ * (0 .. levels - 1, le plus grand étant le plus urgent). Un message est
+ * rangé dans le niveau de sa priorité (Message.priority, ramenée à
+ * levels - 1 si elle dépasse) ; chaque niveau reste FIFO.
+ *
+ * Service :
+ * - get() sert le niveau non vide le plus élevé,
+ * - les lots (get(k), get(dst, min, max), drainTo, ...) choisissent le
+ * niveau message par message et peuvent donc mélanger les niveaux,
+ * - vieillissement optionnel (aging > 0) : la priorité effective du message
+ * en tête d'un niveau augmente de 1 par période aging passée dans le
+ * tampon, ce qui empêche la famine des niveaux bas (à priorité effective
+ * égale, le niveau le plus élevé est servi).
+ *
+ * Chaque niveau a sa propre capacité et sa propre condition notFull : un
+ * niveau bas plein ne bloque pas les producteurs des niveaux plus urgents.
+ * Les consommateurs attendent sur une condition notEmpty commune.
+ *
+ * La terminaison suit le même contrat que ProdConsBuffer :
+ * setProducersCount(n), producerDone(), isClosed(), et get() renvoie null
+ * (get(k) un lot vide) lorsque la production est finie et le tampon vide.
+ */
+public class PriorityProdConsBuffer implements IProdConsBuffer {
+
+    /**
+     * Un buffer circulaire par niveau.
+     */
+    private final Message[][] rings;
+
+    /**
+     * Date d'insertion (System.nanoTime()) de chaque case, par niveau.
+     * Sert au vieillissement et à get(k, maxWait, unit).
+     */
+    private final long[][] stamps;
+
+    /**
+     * Index de prochaine écriture / lecture et nombre de messages, par niveau.
+     */
+    private final int[] in;
+    private final int[] out;
+    private final int[] counts;
+
+    /**
+     * Nombre total de messages, tous niveaux confondus.
+     * Volatile : relu sans verrou par les stratégies d'attente active.
+     */
+    private volatile int count = 0;
+
+    /**
+     * Période de vieillissement en nanosecondes (0 = pas de vieillissement).
+     */
+    private final long agingNanos;
+
+    private int totalProduced = 0;
+    private int producersRemaining = 0;
+    private volatile boolean closed = false;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+
+    /**
+     * Condition "niveau pas plein", une par niveau.
+     */
+    private final Condition[] notFull;
+
+    /**
+     * Condition "au moins un message (ou production finie)".
+     */
+    private final Condition notEmpty;
+
+    /**
+     * Niveaux libérés par le retrait d'un lot en cours (verrou tenu),
+     * pour ne réveiller que les producteurs concernés.
+     */
+    private final boolean[] freed;
+
+    private final WaitStrategy waitStrategy;
+    private final BooleanSupplier[] hasRoom;
+    private final BooleanSupplier hasMessageOrClosed;
+
+    /**
+     * Construit un tampon à priorités sans vieillissement.
+     *
+     * @param capacity capacité de chaque niveau
+     * @param levels   nombre de niveaux de priorité
+     */
+    public PriorityProdConsBuffer(int capacity, int levels) {
+        this(capacity, levels, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Construit un tampon à priorités avec vieillissement.
+     *
+     * @param capacity capacité de chaque niveau
+     * @param levels   nombre de niveaux de priorité
+     * @param aging    temps d'attente qui vaut un niveau de priorité
+     *                 (0 = pas de vieillissement)
+     * @param unit     unité de aging
+     */
+    public PriorityProdConsBuffer(int capacity, int levels, long aging, TimeUnit unit) {
+        this(capacity, levels, aging, unit, WaitStrategy.blocking());
+    }
+
+    /**
+     * Construit un tampon à priorités avec vieillissement et stratégie
+     * d'attente.
+     *
+     * @param capacity     capacité de chaque niveau (strictement positive)
+     * @param levels       nombre de niveaux de priorité (strictement positif)
+     * @param aging        temps d'attente qui vaut un niveau de priorité
+     *                     (0 = pas de vieillissement)
+     * @param unit         unité de aging
+     * @param waitStrategy stratégie d'attente lorsqu'un niveau est plein ou
+     *                     le tampon vide
+     */
+    public PriorityProdConsBuffer(int capacity, int levels, long aging, TimeUnit unit,
+            WaitStrategy waitStrategy) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity <= 0");
+        if (levels <= 0)
+            throw new IllegalArgumentException("levels <= 0");
+        if (aging < 0)
+            throw new IllegalArgumentException("aging < 0");
+        if (waitStrategy == null)
+            throw new NullPointerException("waitStrategy == null");
+        this.rings = new Message[levels][capacity];
+        this.stamps = new long[levels][capacity];
+        this.in = new int[levels];
+        this.out = new int[levels];
+        this.counts = new int[levels];
+        this.freed = new boolean[levels];
+        this.agingNanos = unit.toNanos(aging);
+        this.notFull = new Condition[levels];
+        this.hasRoom = new BooleanSupplier[levels];
+        for (int l = 0; l < levels; l++) {
+            final int level = l;
+            notFull[l] = lock.newCondition();
+            // La lecture volatile de count force la relecture de counts[level]
+            // à chaque appel de la garde.
+            hasRoom[l] = () -> count >= 0 && counts[level] < capacity;
+        }
+        this.notEmpty = lock.newCondition();
+        this.waitStrategy = waitStrategy;
+        this.hasMessageOrClosed = () -> count > 0 || closed;
+    }
+
+    @Override
+    public void put(Message m) throws InterruptedException {
+        int l = levelOf(m);
+        lock.lock();
+        try {
+            while (isFull(l))
+                waitStrategy.await(lock, notFull[l], hasRoom[l]);
+            enqueue(l, m);
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void putAll(Message[] batch) throws InterruptedException {
+        putAll(batch, 0, batch.length);
+    }
+
+    @Override
+    public void putAll(Message[] batch, int off, int len) throws InterruptedException {
+        Objects.checkFromIndexSize(off, len, batch.length);
+        int end = off + len;
+
+        lock.lock();
+        try {
+            while (off < end) {
+                // Attente uniquement si le niveau du prochain message est plein
+                int l = levelOf(batch[off]);
+                while (isFull(l))
+                    waitStrategy.await(lock, notFull[l], hasRoom[l]);
+                off += enqueue(batch, off, end - off);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean tryPut(Message m) {
+        int l = levelOf(m);
+        lock.lock();
+        try {
+            if (isFull(l))
+                return false;
+            enqueue(l, m);
+            notEmpty.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        int l = levelOf(m);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (isFull(l)) {
+                if (nanos <= 0)
+                    return false;
+                nanos = notFull[l].awaitNanos(nanos);
+            }
+            enqueue(l, m);
+            notEmpty.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int tryPutAll(Message[] batch, int off, int len) {
+        Objects.checkFromIndexSize(off, len, batch.length);
+        lock.lock();
+        try {
+            return enqueue(batch, off, len);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int offerAll(Message[] batch, int off, int len, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        Objects.checkFromIndexSize(off, len, batch.length);
+        long nanos = unit.toNanos(timeout);
+        int done = 0;
+        lock.lockInterruptibly();
+        try {
+            while (done < len) {
+                int l = levelOf(batch[off + done]);
+                while (isFull(l)) {
+                    if (nanos <= 0)
+                        return done;
+                    nanos = notFull[l].awaitNanos(nanos);
+                }
+                done += enqueue(batch, off + done, len - done);
+            }
+            return done;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message get() throws InterruptedException {
+        lock.lock();
+        try {
+            while (count == 0 && !closed)
+                waitStrategy.await(lock, notEmpty, hasMessageOrClosed);
+            if (count == 0)
+                return null;
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message tryGet() {
+        lock.lock();
+        try {
+            if (count == 0)
+                return null;
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0 && !closed) {
+                if (nanos <= 0)
+                    return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            if (count == 0)
+                return null;
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int poll(Message[] dst, int min, int max, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        checkBatch(dst, min, max);
+        long nanos = unit.toNanos(timeout);
+
+        lock.lockInterruptibly();
+        try {
+            int n = 0;
+            while (true) {
+                n += dequeue(dst, n, max - n);
+                if (n >= min || closed || nanos <= 0)
+                    return n;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message[] get(int k) throws InterruptedException {
+        if (k <= 0)
+            throw new IllegalArgumentException("k <= 0");
+        Message[] batch = new Message[k];
+        int n = get(batch, k, k);
+        return n == k ? batch : Arrays.copyOf(batch, n);
+    }
+
+    @Override
+    public int get(Message[] dst, int min, int max) throws InterruptedException {
+        checkBatch(dst, min, max);
+
+        lock.lock();
+        try {
+            int n = 0;
+            while (true) {
+                // Retrait par priorité de tout ce qui est disponible (max au plus)
+                n += dequeue(dst, n, max - n);
+                if (n >= min || closed)
+                    return n;
+                waitStrategy.await(lock, notEmpty, hasMessageOrClosed);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message[] get(int k, long maxWait, TimeUnit unit) throws InterruptedException {
+        if (k <= 0)
+            throw new IllegalArgumentException("k <= 0");
+        Message[] batch = new Message[k];
+        int n = get(batch, k, k, maxWait, unit);
+        return n == k ? batch : Arrays.copyOf(batch, n);
+    }
+
+    @Override
+    public int get(Message[] dst, int min, int max, long maxWait, TimeUnit unit)
+            throws InterruptedException {
+        checkBatch(dst, min, max);
+        if (maxWait < 0)
+            throw new IllegalArgumentException("maxWait < 0");
+        long maxWaitNanos = unit.toNanos(maxWait);
+
+        lock.lock();
+        try {
+            int n = 0;
+            // Échéance du lot : date d'insertion de son premier message + maxWait
+            long deadline = 0;
+            while (true) {
+                if (n == 0 && count > 0) {
+                    int l = selectLevel(System.nanoTime());
+                    deadline = stamps[l][out[l]] + maxWaitNanos;
+                }
+                n += dequeue(dst, n, max - n);
+
+                if (n >= min || closed)
+                    return n;
+
+                if (n == 0) {
+                    waitStrategy.await(lock, notEmpty, hasMessageOrClosed);
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0)
+                        return n;
+                    notEmpty.awaitNanos(remaining);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Message[] dst, int max) {
+        if (max < 0 || max > dst.length)
+            throw new IllegalArgumentException("max hors de [0, dst.length]");
+
+        lock.lock();
+        try {
+            return dequeue(dst, 0, max);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Vérifie les paramètres communs des retraits par lot.
+     */
+    private static void checkBatch(Message[] dst, int min, int max) {
+        if (min <= 0)
+            throw new IllegalArgumentException("min <= 0");
+        if (max < min)
+            throw new IllegalArgumentException("max < min");
+        if (max > dst.length)
+            throw new IllegalArgumentException("max > dst.length");
+    }
+
+    /**
+     * Niveau de rangement de m : sa priorité, bornée au niveau le plus élevé.
+     */
+    private int levelOf(Message m) {
+        return Math.min(m.priority, rings.length - 1);
+    }
+
+    private boolean isFull(int l) {
+        return counts[l] == rings[l].length;
+    }
+
+    /**
+     * Choisit le niveau à servir (verrou tenu, tampon non vide) : le niveau
+     * non vide le plus élevé, ou, avec vieillissement, celui dont le message
+     * de tête a la plus grande priorité effective.
+     *
+     * @param now date courante (System.nanoTime()), ignorée sans vieillissement
+     */
+    private int selectLevel(long now) {
+        int best = -1;
+        long bestScore = Long.MIN_VALUE;
+        for (int l = rings.length - 1; l >= 0; l--) {
+            if (counts[l] == 0)
+                continue;
+            if (agingNanos == 0)
+                return l;
+            // Priorité effective = niveau + nombre de périodes d'attente
+            long score = l + (now - stamps[l][out[l]]) / agingNanos;
+            if (score > bestScore) {
+                best = l;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Insère m dans le niveau l (verrou tenu, niveau non plein).
+     * Le réveil des consommateurs est laissé à l'appelant.
+     */
+    private void enqueue(int l, Message m) {
+        rings[l][in[l]] = m;
+        stamps[l][in[l]] = System.nanoTime();
+        in[l] = (in[l] + 1) % rings[l].length;
+        counts[l]++;
+        count++;
+        totalProduced++;
+    }
+
+    /**
+     * Insère batch[off ..] dans l'ordre, jusqu'au premier message dont le
+     * niveau est plein (verrou tenu), avec un seul réveil des consommateurs.
+     *
+     * @return nombre de messages insérés
+     */
+    private int enqueue(Message[] batch, int off, int len) {
+        int n = 0;
+        while (n < len) {
+            Message m = batch[off + n];
+            int l = levelOf(m);
+            if (isFull(l))
+                break;
+            enqueue(l, m);
+            n++;
+        }
+        if (n > 0)
+            notEmpty.signalAll();
+        return n;
+    }
+
+    /**
+     * Retire le message à servir (verrou tenu, tampon non vide).
+     */
+    private Message dequeue() {
+        int l = selectLevel(agingNanos == 0 ? 0L : System.nanoTime());
+        Message m = take(l);
+        notFull[l].signal();
+        return m;
+    }
+
+    /**
+     * Retire jusqu'à len messages, niveau choisi message par message, et les
+     * copie dans dst[off ..] (verrou tenu). Réveille les producteurs des
+     * niveaux libérés.
+     *
+     * @return nombre de messages retirés
+     */
+    private int dequeue(Message[] dst, int off, int len) {
+        int n = Math.min(len, count);
+        if (n == 0)
+            return 0;
+        long now = agingNanos == 0 ? 0L : System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            int l = selectLevel(now);
+            dst[off + i] = take(l);
+            freed[l] = true;
+        }
+        for (int l = 0; l < freed.length; l++) {
+            if (freed[l]) {
+                freed[l] = false;
+                notFull[l].signalAll();
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Retire le message de tête du niveau l (verrou tenu, niveau non vide).
+     */
+    private Message take(int l) {
+        Message m = rings[l][out[l]];
+        rings[l][out[l]] = null;
+        out[l] = (out[l] + 1) % rings[l].length;
+        counts[l]--;
+        count--;
+        return m;
+    }
+
+    @Override
+    public void setProducersCount(int n) {
+        lock.lock();
+        try {
+            if (n < 0)
+                throw new IllegalArgumentException("producers count < 0");
+            this.producersRemaining = n;
+            if (n == 0) {
+                this.closed = true;
+                notEmpty.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void producerDone() {
+        lock.lock();
+        try {
+            if (producersRemaining > 0)
+                producersRemaining--;
+            if (producersRemaining == 0) {
+                closed = true;
+                notEmpty.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return nombre de niveaux de priorité
+     */
+    public int levels() {
+        return rings.length;
+    }
+
+    /**
+     * Nombre de messages présents dans un niveau (observation / statistiques).
+     *
+     * @param level niveau de priorité
+     * @return nombre de messages du niveau
+     */
+    public int nmsg(int level) {
+        lock.lock();
+        try {
+            return counts[level];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int nmsg() {
+        return count;
+    }
+
+    @Override
+    public int totmsg() {
+        lock.lock();
+        try {
+            return totalProduced;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package prodcons.v5;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 
 /**
  * Tampon ProdCons pour la version v5.
@@ -10,6 +13,14 @@ import java.util.concurrent.locks.ReentrantLock;
  * Fonctionnalités :
  * - buffer circulaire borné, synchronisé avec ReentrantLock + Conditions,
  * - support de la consommation unitaire (get()) et par lot (get(k)),
+ * - consommation par lot sans allocation dans un tableau fourni
+ * (get(Message[], min, max), drainTo),
+ * - lots à latence bornée (get(k, maxWait, unit)) grâce à la date
+ * d'insertion mémorisée pour chaque case,
+ * - variantes sans attente (tryPut, tryGet, tryPutAll, drainTo) et à délai
+ * (offer, poll, offerAll, poll par lot),
+ * - production par lot (putAll) : une prise de verrou et un réveil par
+ * morceau inséré au lieu d'un par message,
  * - gestion de la fin de production via expectedTotal, pour que les
  * consommateurs puissent détecter qu'il n'y aura plus jamais de nouveaux
  * messages.
@@ -18,7 +29,9 @@ import java.util.concurrent.locks.ReentrantLock;
  * (somme des quotas de tous les producteurs).
  * Quand totalProduced atteint expectedTotal, le buffer est considéré comme
  * "fermé" (plus de production à venir).
- 
+ *
+ * Les attentes (buffer plein / vide) passent par une WaitStrategy :
+ * blocage immédiat par défaut, ou attente active préalable.
  */
 public class ProdConsBuffer implements IProdConsBuffer {
 
@@ -27,6 +40,12 @@ public class ProdConsBuffer implements IProdConsBuffer {
      */
     private final Message[] buf;
 
+    /**
+     * Date d'insertion (System.nanoTime()) du message de chaque case,
+     * en parallèle de buf. Sert à borner la latence dans get(k, maxWait, unit).
+     */
+    private final long[] stamps;
+
     /**
      * Index de la prochaine écriture.
      */
@@ -39,8 +58,9 @@ public class ProdConsBuffer implements IProdConsBuffer {
 
     /**
      * Nombre de messages actuellement dans le buffer (0 <= count <= buf.length).
+     * Volatile : relu sans verrou par les stratégies d'attente active.
      */
-    private int count = 0;
+    private volatile int count = 0;
 
     /**
      * Nombre total de messages produits depuis le début.
@@ -58,7 +78,7 @@ public class ProdConsBuffer implements IProdConsBuffer {
     /**
      * Indique que tous les producteurs ont appelé producerDone().
      */
-    private boolean closed = false;
+    private volatile boolean closed = false;
 
     /**
      * Lock équitable pour protéger l'accès au buffer et aux compteurs.
@@ -78,6 +98,18 @@ public class ProdConsBuffer implements IProdConsBuffer {
      */
     private final Condition notEmpty = lock.newCondition();
 
+    /**
+     * Stratégie d'attente sur notFull / notEmpty.
+     */
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * Gardes relues sans verrou par la stratégie d'attente
+     * (créées une fois pour ne pas allouer à chaque attente).
+     */
+    private final BooleanSupplier hasRoom;
+    private final BooleanSupplier hasMessageOrClosed;
+
     /**
      * Nombre total de messages que l'on s'attend à produire au cours de
      * l'exécution.
@@ -91,9 +123,25 @@ public class ProdConsBuffer implements IProdConsBuffer {
      * @param capacity taille maximale du buffer
      */
     public ProdConsBuffer(int capacity) {
+        this(capacity, WaitStrategy.blocking());
+    }
+
+    /**
+     * Construit un buffer de capacité donnée avec une stratégie d'attente.
+     *
+     * @param capacity     taille maximale du buffer
+     * @param waitStrategy stratégie d'attente lorsque le buffer est plein / vide
+     */
+    public ProdConsBuffer(int capacity, WaitStrategy waitStrategy) {
         if (capacity <= 0)
             throw new IllegalArgumentException("capacity <= 0");
+        if (waitStrategy == null)
+            throw new NullPointerException("waitStrategy == null");
         this.buf = new Message[capacity];
+        this.stamps = new long[capacity];
+        this.waitStrategy = waitStrategy;
+        this.hasRoom = () -> count < buf.length;
+        this.hasMessageOrClosed = () -> count > 0 || closed;
     }
 
     /**
@@ -113,16 +161,9 @@ public class ProdConsBuffer implements IProdConsBuffer {
         try {
             // Attente tant que le buffer est plein
             while (count == buf.length)
-                notFull.await();
+                waitStrategy.await(lock, notFull, hasRoom);
 
-            // Insertion du message dans le buffer circulaire
-            buf[in] = m;
-            in = (in + 1) % buf.length;
-            count++;
-            totalProduced++;
-
-            // Réveil des consommateurs : il y a au moins un message disponible
-            notEmpty.signalAll();
+            enqueue(m);
 
             // Rien de plus ici : la fin est signalée par producerDone() lorsque
             // le dernier producteur a terminé.
@@ -131,6 +172,94 @@ public class ProdConsBuffer implements IProdConsBuffer {
         }
     }
 
+    @Override
+    public void putAll(Message[] batch) throws InterruptedException {
+        putAll(batch, 0, batch.length);
+    }
+
+    @Override
+    public void putAll(Message[] batch, int off, int len) throws InterruptedException {
+        Objects.checkFromIndexSize(off, len, batch.length);
+        int end = off + len;
+
+        lock.lock();
+        try {
+            while (off < end) {
+                // Attente uniquement si aucune place n'est libre
+                while (count == buf.length)
+                    waitStrategy.await(lock, notFull, hasRoom);
+
+                // On insère d'un coup tout ce qui tient dans la place libre
+                off += enqueue(batch, off, end - off);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean tryPut(Message m) {
+        lock.lock();
+        try {
+            if (count == buf.length)
+                return false;
+            enqueue(m);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == buf.length) {
+                if (nanos <= 0)
+                    return false;
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(m);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int tryPutAll(Message[] batch, int off, int len) {
+        Objects.checkFromIndexSize(off, len, batch.length);
+        lock.lock();
+        try {
+            return enqueue(batch, off, len);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int offerAll(Message[] batch, int off, int len, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        Objects.checkFromIndexSize(off, len, batch.length);
+        long nanos = unit.toNanos(timeout);
+        int done = 0;
+        lock.lockInterruptibly();
+        try {
+            while (done < len) {
+                while (count == buf.length) {
+                    if (nanos <= 0)
+                        return done;
+                    nanos = notFull.awaitNanos(nanos);
+                }
+                done += enqueue(batch, off + done, len - done);
+            }
+            return done;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     @Override
     public Message get() throws InterruptedException {
         lock.lock();
@@ -138,21 +267,68 @@ public class ProdConsBuffer implements IProdConsBuffer {
             // Attendre un message tant que le buffer est vide et que la production n'est
             // pas finie
             while (count == 0 && !finished())
-                notEmpty.await();
+                waitStrategy.await(lock, notEmpty, hasMessageOrClosed);
 
             // Si le buffer est vide et que la production est finie, plus rien à lire
             if (count == 0 && finished())
                 return null;
 
-            // Lecture d'un message
-            Message m = buf[out];
-            buf[out] = null;
-            out = (out + 1) % buf.length;
-            count--;
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message tryGet() {
+        lock.lock();
+        try {
+            if (count == 0)
+                return null;
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            // Une place libre de plus pour les producteurs
-            notFull.signal();
-            return m;
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0 && !finished()) {
+                if (nanos <= 0)
+                    return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            if (count == 0)
+                return null;
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int poll(Message[] dst, int min, int max, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        if (min <= 0)
+            throw new IllegalArgumentException("min <= 0");
+        if (max < min)
+            throw new IllegalArgumentException("max < min");
+        if (max > dst.length)
+            throw new IllegalArgumentException("max > dst.length");
+        long nanos = unit.toNanos(timeout);
+
+        lock.lockInterruptibly();
+        try {
+            int n = 0;
+            while (true) {
+                n += dequeue(dst, n, max - n);
+                if (n >= min || finished() || nanos <= 0)
+                    return n;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
         } finally {
             lock.unlock();
         }
@@ -163,51 +339,183 @@ public class ProdConsBuffer implements IProdConsBuffer {
         if (k <= 0)
             throw new IllegalArgumentException("k <= 0");
 
+        // On remplit un tableau de k cases, puis on le tronque si le lot est
+        // partiel (fin de production).
+        Message[] batch = new Message[k];
+        int n = get(batch, k, k);
+        return n == k ? batch : Arrays.copyOf(batch, n);
+    }
+
+    @Override
+    public int get(Message[] dst, int min, int max) throws InterruptedException {
+        if (min <= 0)
+            throw new IllegalArgumentException("min <= 0");
+        if (max < min)
+            throw new IllegalArgumentException("max < min");
+        if (max > dst.length)
+            throw new IllegalArgumentException("max > dst.length");
+
         lock.lock();
         try {
-            ArrayList<Message> batch = new ArrayList<>(k);
-
-            // On essaie de remplir le lot jusqu'à k messages.
-            while (batch.size() < k) {
-                // Tant que le buffer est vide et que la production continue, on attend.
-                while (count == 0 && !finished())
-                    notEmpty.await();
-
-                // Si le buffer est vide et que la production est finie, on ne pourra pas
-                // obtenir plus de messages : on sort avec ce qu'on a (éventuellement 0).
-                if (count == 0 && finished())
-                    break;
-
-                // Tant qu'il y a des messages dispo et qu'on n'a pas encore k éléments,
-                // on vide le buffer en FIFO dans le lot.
-                while (count > 0 && batch.size() < k) {
-                    Message m = buf[out];
-                    buf[out] = null;
-                    out = (out + 1) % buf.length;
-                    count--;
-                    batch.add(m);
-                }
+            int n = 0;
+            while (true) {
+                // On vide en FIFO tout ce qui est disponible, dans la limite de max.
+                n += dequeue(dst, n, max - n);
+
+                // Lot suffisant, ou production finie : on rend ce qu'on a
+                // (éventuellement 0). Si n < min, le buffer est forcément vide ici.
+                if (n >= min || finished())
+                    return n;
+
+                // Sinon on attend l'arrivée de nouveaux messages.
+                waitStrategy.await(lock, notEmpty, hasMessageOrClosed);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
 
-                // On a libéré des cases, on peut réveiller les producteurs.
-                notFull.signalAll();
+    @Override
+    public Message[] get(int k, long maxWait, TimeUnit unit) throws InterruptedException {
+        if (k <= 0)
+            throw new IllegalArgumentException("k <= 0");
+
+        Message[] batch = new Message[k];
+        int n = get(batch, k, k, maxWait, unit);
+        return n == k ? batch : Arrays.copyOf(batch, n);
+    }
 
-                // Si le lot est encore incomplet, deux cas :
-                // - si la production est finie → on sort, on rend le lot partiel
-                // - sinon → on peut attendre l'arrivée de nouveaux messages
-                if (batch.size() < k) {
-                    if (finished())
-                        break;
-                    notEmpty.await();
+    @Override
+    public int get(Message[] dst, int min, int max, long maxWait, TimeUnit unit)
+            throws InterruptedException {
+        if (min <= 0)
+            throw new IllegalArgumentException("min <= 0");
+        if (max < min)
+            throw new IllegalArgumentException("max < min");
+        if (max > dst.length)
+            throw new IllegalArgumentException("max > dst.length");
+        if (maxWait < 0)
+            throw new IllegalArgumentException("maxWait < 0");
+        long maxWaitNanos = unit.toNanos(maxWait);
+
+        lock.lock();
+        try {
+            int n = 0;
+            // Échéance du lot : date d'insertion de son premier message + maxWait
+            long deadline = 0;
+            while (true) {
+                if (n == 0 && count > 0)
+                    deadline = stamps[out] + maxWaitNanos;
+                n += dequeue(dst, n, max - n);
+
+                if (n >= min || finished())
+                    return n;
+
+                if (n == 0) {
+                    // Lot vide : aucune latence à borner, attente normale.
+                    waitStrategy.await(lock, notEmpty, hasMessageOrClosed);
+                } else {
+                    // Lot entamé : on n'attend pas au-delà de l'échéance.
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0)
+                        return n;
+                    notEmpty.awaitNanos(remaining);
                 }
             }
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            // Conversion de la liste en tableau compact
-            return batch.toArray(new Message[0]);
+    @Override
+    public int drainTo(Message[] dst, int max) {
+        if (max < 0 || max > dst.length)
+            throw new IllegalArgumentException("max hors de [0, dst.length]");
+
+        lock.lock();
+        try {
+            return dequeue(dst, 0, max);
         } finally {
             lock.unlock();
         }
     }
 
+    /**
+     * Insère un message (verrou tenu, buffer non plein).
+     */
+    private void enqueue(Message m) {
+        // Insertion du message dans le buffer circulaire
+        buf[in] = m;
+        stamps[in] = System.nanoTime();
+        in = (in + 1) % buf.length;
+        count++;
+        totalProduced++;
+
+        // Réveil des consommateurs : il y a au moins un message disponible
+        notEmpty.signalAll();
+    }
+
+    /**
+     * Insère batch[off ..] dans la limite de la place libre (verrou tenu),
+     * avec un seul réveil pour tout le morceau.
+     *
+     * @return nombre de messages insérés (0 si le buffer est plein)
+     */
+    private int enqueue(Message[] batch, int off, int len) {
+        int n = Math.min(len, buf.length - count);
+        if (n == 0)
+            return 0;
+        long now = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            buf[in] = batch[off + i];
+            stamps[in] = now;
+            in = (in + 1) % buf.length;
+        }
+        count += n;
+        totalProduced += n;
+
+        // Un seul réveil pour tout le morceau inséré
+        notEmpty.signalAll();
+        return n;
+    }
+
+    /**
+     * Retire un message (verrou tenu, buffer non vide).
+     */
+    private Message dequeue() {
+        // Lecture d'un message
+        Message m = buf[out];
+        buf[out] = null;
+        out = (out + 1) % buf.length;
+        count--;
+
+        // Une place libre de plus pour les producteurs
+        notFull.signal();
+        return m;
+    }
+
+    /**
+     * Retire jusqu'à len messages et les copie dans dst[off ..] (verrou tenu).
+     * Réveille les producteurs si des cases ont été libérées.
+     *
+     * @return nombre de messages retirés
+     */
+    private int dequeue(Message[] dst, int off, int len) {
+        int n = Math.min(len, count);
+        for (int i = 0; i < n; i++) {
+            dst[off + i] = buf[out];
+            buf[out] = null;
+            out = (out + 1) % buf.length;
+        }
+        if (n > 0) {
+            count -= n;
+            // On a libéré des cases, on peut réveiller les producteurs.
+            notFull.signalAll();
+        }
+        return n;
+    }
+
+    @Override
     public void setProducersCount(int n) {
         lock.lock();
         try {
@@ -223,6 +531,7 @@ public class ProdConsBuffer implements IProdConsBuffer {
         }
     }
 
+    @Override
     public void producerDone() {
         lock.lock();
         try {
@@ -238,6 +547,7 @@ public class ProdConsBuffer implements IProdConsBuffer {
         }
     }
 
+    @Override
     public boolean isClosed() {
         lock.lock();
         try {
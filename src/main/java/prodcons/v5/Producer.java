@@ -1,5 +1,6 @@
 package prodcons.v5;
 
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -12,6 +13,12 @@ import java.util.concurrent.atomic.AtomicInteger;
  * Les identifiants des messages sont générés à partir d'un compteur global GEN,
  * ce qui garantit des IDs uniques sur l'ensemble des producteurs.
  * 
+ * Si putBatch > 1, le producteur génère ses messages par rafales de
+ * putBatch messages et les insère d'un coup via putAll().
+ *
+ * Si levels > 1, chaque message reçoit une priorité tirée au hasard dans
+ * [0, levels - 1] (voir PriorityProdConsBuffer).
+ *
  * Comme en v3/v4, la méthode producerDone() du buffer est
  * appelée dans un bloc finally pour garantir que ce producteur
  * est toujours comptabilisé comme terminé, même en cas d'interruption.
@@ -27,7 +34,7 @@ public class Producer extends Thread {
     /**
      * Buffer partagé vers lequel ce producteur envoie ses messages.
      */
-    private final ProdConsBuffer buffer;
+    private final IProdConsBuffer buffer;
 
     /**
      * Nombre de messages que ce producteur doit produire.
@@ -41,23 +48,72 @@ public class Producer extends Thread {
     private final int prodTimeMs;
 
     /**
-     * Construit un producteur avec un quota donné.
+     * Taille des rafales insérées via putAll() (1 = put() message par message).
+     */
+    private final int putBatch;
+
+    /**
+     * Nombre de niveaux de priorité des messages produits (1 = priorité 0).
+     */
+    private final int levels;
+
+    /**
+     * Construit un producteur avec un quota donné, qui insère ses messages
+     * un par un.
+     *
+     * @param pid        identifiant logique pour le nom du thread
+     * @param buffer     tampon partagé
+     * @param quota      nombre de messages à produire
+     * @param prodTimeMs temps de production simulé entre deux messages
+     */
+    public Producer(int pid, IProdConsBuffer buffer, int quota, int prodTimeMs) {
+        this(pid, buffer, quota, prodTimeMs, 1);
+    }
+
+    /**
+     * Construit un producteur avec un quota donné, qui insère ses messages
+     * par rafales.
+     *
+     * @param pid        identifiant logique pour le nom du thread
+     * @param buffer     tampon partagé
+     * @param quota      nombre de messages à produire
+     * @param prodTimeMs temps de production simulé entre deux messages
+     * @param putBatch   taille des rafales (strictement positive)
+     */
+    public Producer(int pid, IProdConsBuffer buffer, int quota, int prodTimeMs, int putBatch) {
+        this(pid, buffer, quota, prodTimeMs, putBatch, 1);
+    }
+
+    /**
+     * Construit un producteur de messages à priorités aléatoires.
      *
      * @param pid        identifiant logique pour le nom du thread
      * @param buffer     tampon partagé
      * @param quota      nombre de messages à produire
      * @param prodTimeMs temps de production simulé entre deux messages
+     * @param putBatch   taille des rafales (strictement positive)
+     * @param levels     nombre de niveaux de priorité (strictement positif)
      */
-    public Producer(int pid, ProdConsBuffer buffer, int quota, int prodTimeMs) {
+    public Producer(int pid, IProdConsBuffer buffer, int quota, int prodTimeMs, int putBatch,
+            int levels) {
         super("P-" + pid);
+        if (putBatch <= 0)
+            throw new IllegalArgumentException("putBatch <= 0");
+        if (levels <= 0)
+            throw new IllegalArgumentException("levels <= 0");
         this.buffer = buffer;
         this.quota = quota;
         this.prodTimeMs = prodTimeMs;
+        this.putBatch = putBatch;
+        this.levels = levels;
     }
 
     @Override
     public void run() {
         try {
+            // Rafale en cours de constitution (réutilisée d'une rafale à l'autre)
+            Message[] burst = new Message[Math.min(putBatch, Math.max(quota, 1))];
+            int pending = 0;
             for (int i = 0; i < quota; i++) {
                 try {
                     // Simule un temps de production
@@ -65,9 +121,17 @@ public class Producer extends Thread {
 
                     // Génère un identifiant unique pour le message
                     int id = GEN.incrementAndGet();
+                    int prio = levels == 1 ? 0 : ThreadLocalRandom.current().nextInt(levels);
+                    burst[pending++] = new Message(id, getId(), prio);
 
-                    // Insère le message dans le buffer
-                    buffer.put(new Message(id, getId()));
+                    // Insère la rafale lorsqu'elle est complète (ou au dernier message)
+                    if (pending == burst.length || i == quota - 1) {
+                        if (pending == 1)
+                            buffer.put(burst[0]);
+                        else
+                            buffer.putAll(burst, 0, pending);
+                        pending = 0;
+                    }
 
                 } catch (InterruptedException e) {
                     // Interruption = arrêt anticipé, on arrête la production
@@ -4,11 +4,15 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import prodcons.ThreadMode;
+
 /**
  * Test de la version v5 du problème producteur-consommateur.
  *
@@ -43,7 +47,26 @@ public class TestProdCons {
         int consT = Integer.parseInt(props.getProperty("consTime"));
         int minProd = Integer.parseInt(props.getProperty("minProd"));
         int maxProd = Integer.parseInt(props.getProperty("maxProd"));
+        // Exécution des participants (voir prodcons.ThreadMode)
+        ThreadMode threadMode = ThreadMode.fromName(props.getProperty("threadMode", "platform"));
         int k = Integer.parseInt(props.getProperty("k")); // taille de lot pour get(k)
+        // Taille des rafales des producteurs pour putAll (1 = put unitaire)
+        int putBatch = Integer.parseInt(props.getProperty("putBatch", "1"));
+        // Latence maximale d'un lot en ms (0 = get(k) attend k messages)
+        int lingerMs = Integer.parseInt(props.getProperty("lingerMs", "0"));
+        // Taille de lot adaptative (AIMD) dans [kMin, kMax], voir BatchSizer
+        boolean adaptive = Boolean.parseBoolean(props.getProperty("adaptive", "false"));
+        int kMin = Integer.parseInt(props.getProperty("kMin", "1"));
+        int kMax = Integer.parseInt(props.getProperty("kMax", String.valueOf(k)));
+        int targetWaitMs = Integer.parseInt(props.getProperty("targetWaitMs", "10"));
+        // Niveaux de priorité (1 = tampon FIFO) et vieillissement en ms
+        // (0 = aucun), voir PriorityProdConsBuffer
+        int levels = Integer.parseInt(props.getProperty("levels", "1"));
+        int agingMs = Integer.parseInt(props.getProperty("agingMs", "0"));
+        // Stratégie d'attente du tampon (voir WaitStrategy)
+        WaitStrategy ws = WaitStrategy.fromName(props.getProperty("waitStrategy", "block"),
+                Integer.parseInt(props.getProperty("spinBudget",
+                        String.valueOf(WaitStrategy.DEFAULT_SPIN_BUDGET))));
 
         // Tirage des quotas des producteurs (avant démarrage)
         int[] quotas = new int[nProd];
@@ -58,7 +81,10 @@ public class TestProdCons {
         // Le buffer est construit avec la capacité ; on initialise ensuite
         // le nombre de producteurs attendus pour la logique de terminaison
         // buffer‑centrée.
-        ProdConsBuffer buffer = new ProdConsBuffer(bufSz);
+        // Avec plusieurs niveaux, bufSz est la capacité de chaque niveau.
+        IProdConsBuffer buffer = levels > 1
+                ? new PriorityProdConsBuffer(bufSz, levels, agingMs, TimeUnit.MILLISECONDS, ws)
+                : new ProdConsBuffer(bufSz, ws);
         buffer.setProducersCount(nProd);
         AtomicInteger consumed = new AtomicInteger(0);
 
@@ -72,7 +98,16 @@ public class TestProdCons {
         System.out.printf("  consT   = %d ms%n", consT);
         System.out.printf("  minProd = %d%n", minProd);
         System.out.printf("  maxProd = %d%n", maxProd);
+        System.out.printf("  threads = %s%n", threadMode);
         System.out.printf("  k (taille des lots) = %d%n", k);
+        System.out.printf("  putBatch (rafales)  = %d%n", putBatch);
+        System.out.printf("  lingerMs            = %d%n", lingerMs);
+        if (adaptive)
+            System.out.printf("  adaptatif : k dans [%d, %d], attente visée = %d ms%n",
+                    kMin, kMax, targetWaitMs);
+        if (levels > 1)
+            System.out.printf("  priorités : %d niveaux, vieillissement = %d ms%n", levels, agingMs);
+        System.out.printf("  wait    = %s%n", ws);
         System.out.printf("  TOTAL messages (somme des quotas) = %d%n", TOTAL);
         System.out.println("  Quotas par producteur :");
         for (int i = 0; i < nProd; i++) {
@@ -86,14 +121,17 @@ public class TestProdCons {
 
         // Producteurs (quota fixe)
         for (int i = 0; i < nProd; i++) {
-            Thread t = new Producer(i + 1, buffer, quotas[i], prodT);
+            Thread t = new Producer(i + 1, buffer, quotas[i], prodT, putBatch, levels);
             producers.add(t);
             all.add(t);
         }
 
-        // Consommateurs (lecture par lots de k)
+        // Consommateurs (lecture par lots de k, éventuellement adaptatifs)
         for (int i = 0; i < nCons; i++) {
-            Thread t = new Consumer(i + 1, buffer, consT, k, consumed);
+            BatchSizer sizer = adaptive
+                    ? new BatchSizer(k, kMin, kMax, TimeUnit.MILLISECONDS.toNanos(targetWaitMs))
+                    : BatchSizer.fixed(k);
+            Thread t = new Consumer(i + 1, buffer, consT, sizer, lingerMs, consumed);
             consumers.add(t);
             all.add(t);
         }
@@ -115,16 +153,18 @@ public class TestProdCons {
 
         // Démarrage aléatoire pour mélanger producteurs et consommateurs
         Collections.shuffle(all, new Random());
-        all.forEach(Thread::start);
+        // En mode virtuel, chaque participant s'exécute dans un thread
+        // virtuel : c'est ce thread que l'on rejoint.
+        Map<Thread, Thread> running = threadMode.startAll(all);
 
         // À ce stade :
         // - tous les messages ont été consommés (consumed == TOTAL),
         // - les producteurs finissent naturellement après leur quota,
         // - les consommateurs finissent lorsque get(k) renvoie un lot vide.
         for (Thread t : producers)
-            t.join();
+            running.get(t).join();
         for (Thread t : consumers)
-            t.join();
+            running.get(t).join();
 
         // Résumé final avec vérification de cohérence
         System.out.println("===============================================");
@@ -1,5 +1,7 @@
 package prodcons.v6;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Interface du tampon ProdCons pour la version v6.
  *
@@ -52,6 +54,68 @@ public interface IProdConsBuffer {
      */
     Message get() throws InterruptedException;
 
+    /**
+     * Dépose n exemplaires de m seulement si un slot est libre.
+     *
+     * Seule l'attente d'un slot libre est supprimée : si le message est
+     * déposé, le producteur attend ensuite, comme avec put(), que les n
+     * exemplaires aient été consommés.
+     *
+     * @param m le message à déposer
+     * @param n nombre d'exemplaires du message (strictement positif)
+     * @return true si le message a été déposé (et entièrement consommé),
+     *         false si le buffer était plein
+     * @throws InterruptedException si le producteur est interrompu pendant
+     *                              l'attente de la consommation
+     */
+    boolean tryPut(Message m, int n) throws InterruptedException;
+
+    /**
+     * Dépose n exemplaires de m en attendant au plus timeout un slot libre.
+     *
+     * Le délai ne concerne que l'attente d'un slot : une fois le message
+     * déposé, le producteur attend sans limite que les n exemplaires aient
+     * été consommés (la synchronisation v6 est conservée).
+     *
+     * @param m       le message à déposer
+     * @param n       nombre d'exemplaires du message (strictement positif)
+     * @param timeout délai maximal d'attente d'un slot libre
+     * @param unit    unité de timeout
+     * @return true si le message a été déposé (et entièrement consommé),
+     *         false si aucun slot ne s'est libéré avant la fin du délai
+     * @throws InterruptedException si le producteur est interrompu pendant
+     *                              l'attente
+     */
+    boolean offer(Message m, int n, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Prend un exemplaire seulement si un message est présent.
+     *
+     * Comme pour get(), le consommateur attend ensuite que tous les
+     * exemplaires de ce message aient été consommés.
+     *
+     * @return un message, ou null si le buffer est vide (isClosed() distingue
+     *         un buffer momentanément vide d'un buffer terminé)
+     * @throws InterruptedException si le consommateur est interrompu pendant
+     *                              la synchronisation
+     */
+    Message tryGet() throws InterruptedException;
+
+    /**
+     * Prend un exemplaire en attendant au plus timeout qu'un message arrive.
+     *
+     * Le délai ne concerne que l'attente d'un message : la synchronisation
+     * avec les autres exemplaires n'est pas bornée.
+     *
+     * @param timeout délai maximal d'attente d'un message
+     * @param unit    unité de timeout
+     * @return un message, ou null si le délai a expiré ou si le buffer est
+     *         fermé et vide
+     * @throws InterruptedException si le consommateur est interrompu pendant
+     *                              l'attente
+     */
+    Message poll(long timeout, TimeUnit unit) throws InterruptedException;
+
     /**
      * Nombre de messages actuellement dans le buffer.
      * Ici, ce nombre correspond au nombre de "slots logiques"
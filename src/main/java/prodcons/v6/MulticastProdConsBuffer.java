@@ -0,0 +1,394 @@
+package prodcons.v6;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tampon de diffusion asynchrone (multicast) pour la version v6.
+ *
+ * Chaque message déposé est lu par tous les consommateurs inscrits, comme
+ * dans un Disruptor en mode multicast, mais sans la barrière de
+ * ProdConsBuffer : ni le producteur ni les lecteurs n'attendent que les
+ * autres aient lu le message.
+ *
+ * Principe :
+ * - un anneau partagé de capacity cases et une séquence de dépôt in
+ * (nombre total de messages déposés),
+ * - un curseur (Cursor) par consommateur inscrit, qui mémorise la
+ * séquence du prochain message à lire : chaque consommateur avance à son
+ * rythme,
+ * - chaque case compte les curseurs qui ne l'ont pas encore dépassée ; la
+ * case est récupérée lorsque ce compte tombe à zéro, c'est-à-dire quand
+ * le curseur le plus lent l'a dépassée,
+ * - un producteur ne bloque que si l'anneau est plein, c'est-à-dire si le
+ * curseur le plus lent a un anneau entier de retard.
+ *
+ * Inscription : un curseur ne voit que les messages déposés après
+ * register(). Pour que chaque consommateur reçoive tous les messages, les
+ * curseurs doivent être créés avant le démarrage des producteurs. Un
+ * message déposé alors qu'aucun curseur n'est inscrit n'a aucun lecteur :
+ * sa case est récupérée aussitôt.
+ *
+ * Un curseur appartient à un seul consommateur (un thread à la fois).
+ *
+ * La terminaison suit le contrat des autres tampons : setProducersCount(n),
+ * producerDone(), isClosed(), et Cursor.get() renvoie null lorsque le
+ * buffer est fermé et que ce curseur a tout lu.
+ */
+public class MulticastProdConsBuffer {
+
+    /**
+     * Curseur de lecture d'un consommateur inscrit.
+     */
+    public final class Cursor {
+
+        /**
+         * Séquence du prochain message à lire.
+         */
+        private long next;
+
+        private boolean registered = true;
+
+        private Cursor(long next) {
+            this.next = next;
+        }
+
+        /**
+         * Lit le message suivant, en attendant qu'il soit déposé.
+         *
+         * @return le message suivant, ou null si le buffer est fermé et que
+         *         ce curseur a tout lu
+         * @throws InterruptedException si le consommateur est interrompu
+         *                              pendant l'attente
+         */
+        public Message get() throws InterruptedException {
+            lock.lock();
+            try {
+                checkRegistered(this);
+                while (next == in && !closed)
+                    notEmpty.await();
+                if (next == in)
+                    return null;
+                return read(this);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Lit le message suivant s'il est déjà déposé.
+         *
+         * @return le message, ou null si ce curseur a tout lu (isClosed()
+         *         distingue une attente momentanée de la fin)
+         */
+        public Message tryGet() {
+            lock.lock();
+            try {
+                checkRegistered(this);
+                if (next == in)
+                    return null;
+                return read(this);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Lit le message suivant en attendant au plus timeout.
+         *
+         * @return le message, ou null si le délai a expiré ou si le buffer
+         *         est fermé et que ce curseur a tout lu
+         * @throws InterruptedException si le consommateur est interrompu
+         *                              pendant l'attente
+         */
+        public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            lock.lockInterruptibly();
+            try {
+                checkRegistered(this);
+                while (next == in && !closed) {
+                    if (nanos <= 0)
+                        return null;
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+                if (next == in)
+                    return null;
+                return read(this);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return nombre de messages déposés que ce curseur n'a pas encore lus
+         */
+        public int lag() {
+            lock.lock();
+            try {
+                return (int) (in - next);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Désinscrit ce curseur : il ne retient plus les producteurs, et les
+         * cases qu'il n'avait pas encore lues peuvent être récupérées.
+         * Sans effet si le curseur est déjà désinscrit.
+         */
+        public void unregister() {
+            lock.lock();
+            try {
+                if (!registered)
+                    return;
+                registered = false;
+                cursors.remove(this);
+                for (long s = next; s < in; s++)
+                    readers[index(s)]--;
+                next = in;
+                reclaim();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private final Message[] ring;
+
+    /**
+     * Par case : nombre de curseurs qui ne l'ont pas encore dépassée.
+     */
+    private final int[] readers;
+
+    /**
+     * Séquence du prochain dépôt, et plus ancienne séquence non récupérée.
+     */
+    private long in = 0;
+    private long out = 0;
+
+    private final List<Cursor> cursors = new ArrayList<>();
+
+    private int totalProduced = 0;
+    private int producersRemaining = 0;
+    private volatile boolean closed = false;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * Construit un tampon de diffusion.
+     *
+     * @param capacity nombre de cases de l'anneau, soit le retard maximal
+     *                 (en messages) du consommateur le plus lent
+     */
+    public MulticastProdConsBuffer(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity <= 0");
+        this.ring = new Message[capacity];
+        this.readers = new int[capacity];
+    }
+
+    /**
+     * Inscrit un nouveau consommateur. Son curseur commence au prochain
+     * message déposé.
+     *
+     * @return le curseur de lecture du consommateur
+     */
+    public Cursor register() {
+        lock.lock();
+        try {
+            Cursor c = new Cursor(in);
+            cursors.add(c);
+            return c;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void setProducersCount(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n < 0");
+        lock.lock();
+        try {
+            this.producersRemaining = n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void producerDone() {
+        lock.lock();
+        try {
+            if (producersRemaining > 0) {
+                producersRemaining--;
+                if (producersRemaining == 0) {
+                    closed = true;
+                    notEmpty.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Dépose m pour tous les consommateurs inscrits. Bloque seulement si le
+     * consommateur le plus lent a un anneau entier de retard ; n'attend pas
+     * que m soit lu.
+     *
+     * @throws InterruptedException si le producteur est interrompu pendant
+     *                              l'attente d'une case libre
+     */
+    public void put(Message m) throws InterruptedException {
+        if (m == null)
+            throw new NullPointerException("m == null");
+        lock.lock();
+        try {
+            while (in - out == ring.length)
+                notFull.await();
+            publish(m);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Dépose m seulement si une case est libre.
+     *
+     * @return true si le message a été déposé, false si l'anneau était plein
+     */
+    public boolean tryPut(Message m) {
+        if (m == null)
+            throw new NullPointerException("m == null");
+        lock.lock();
+        try {
+            if (in - out == ring.length)
+                return false;
+            publish(m);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Dépose m en attendant au plus timeout qu'une case se libère.
+     *
+     * @return true si le message a été déposé, false si le délai a expiré
+     * @throws InterruptedException si le producteur est interrompu pendant
+     *                              l'attente
+     */
+    public boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        if (m == null)
+            throw new NullPointerException("m == null");
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (in - out == ring.length) {
+                if (nanos <= 0)
+                    return false;
+                nanos = notFull.awaitNanos(nanos);
+            }
+            publish(m);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Range m dans la case de la séquence in (verrou tenu, anneau non
+     * plein) et réveille les lecteurs : tous doivent le lire.
+     */
+    private void publish(Message m) {
+        int i = index(in);
+        ring[i] = m;
+        readers[i] = cursors.size();
+        in++;
+        totalProduced++;
+        if (readers[i] == 0)
+            reclaim();
+        else
+            notEmpty.signalAll();
+    }
+
+    /**
+     * Lit le message de la séquence c.next (verrou tenu, message présent)
+     * et fait avancer le curseur.
+     */
+    private Message read(Cursor c) {
+        int i = index(c.next);
+        Message m = ring[i];
+        c.next++;
+        if (--readers[i] == 0)
+            reclaim();
+        return m;
+    }
+
+    /**
+     * Récupère les cases de tête dépassées par tous les curseurs (verrou
+     * tenu) et réveille autant de producteurs.
+     */
+    private void reclaim() {
+        while (out < in && readers[index(out)] == 0) {
+            ring[index(out)] = null;
+            out++;
+            notFull.signal();
+        }
+    }
+
+    private void checkRegistered(Cursor c) {
+        if (!c.registered)
+            throw new IllegalStateException("cursor unregistered");
+    }
+
+    private int index(long seq) {
+        return (int) (seq % ring.length);
+    }
+
+    /**
+     * @return nombre de consommateurs inscrits
+     */
+    public int consumers() {
+        lock.lock();
+        try {
+            return cursors.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Nombre de messages encore retenus dans l'anneau, c'est-à-dire le
+     * retard du consommateur le plus lent.
+     */
+    public int nmsg() {
+        lock.lock();
+        try {
+            return (int) (in - out);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Nombre total de messages déposés (chacun compte une fois, quel que
+     * soit le nombre de lecteurs).
+     */
+    public int totmsg() {
+        lock.lock();
+        try {
+            return totalProduced;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package prodcons.v6;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tampon v6 (multi-exemplaires synchrones) à slots recyclés.
+ *
+ * Même contrat que ProdConsBuffer, mais sans allocation par message :
+ * - les slots et leur Condition "tous les exemplaires consommés" sont
+ * créés une fois pour toutes, un par case du buffer circulaire ; le
+ * message déposé en case i réutilise le slot i,
+ * - chaque slot porte un numéro de génération, incrémenté lorsque le
+ * dernier exemplaire est pris. Le producteur et les consommateurs d'un
+ * message attendent que la génération change : un slot déjà réutilisé par
+ * un message suivant ne les retient donc pas.
+ *
+ * Réveils ciblés :
+ * - le dépôt d'un message en n exemplaires réveille au plus n
+ * consommateurs (signal, et non signalAll sur notEmpty),
+ * - la condition d'un slot n'a pour attentes que le producteur et les
+ * détenteurs d'exemplaires de ce message : le signalAll du dernier
+ * consommateur ne réveille qu'eux, et il est omis si personne n'attend
+ * (n == 1 et producteur non bloqué, par exemple avec tryPut).
+ */
+public class PooledProdConsBuffer implements IProdConsBuffer {
+
+    /**
+     * Slot recyclé : une case du buffer circulaire.
+     */
+    private static final class Slot {
+        Message msg;
+        int copies;
+        int taken;
+
+        /**
+         * Incrémenté à chaque libération du slot (dernier exemplaire pris).
+         */
+        long generation;
+
+        /**
+         * Nombre de threads en attente sur allConsumed.
+         */
+        int waiters;
+
+        /**
+         * Barrière du message courant, créée une seule fois.
+         */
+        final Condition allConsumed;
+
+        Slot(Condition allConsumed) {
+            this.allConsumed = allConsumed;
+        }
+    }
+
+    private final Slot[] slots;
+
+    private int in = 0;
+    private int out = 0;
+    private int count = 0;
+    private int totalProduced = 0;
+    private int producersRemaining = 0;
+    private volatile boolean closed = false;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * Construit un buffer v6 à slots recyclés.
+     *
+     * @param capacity nombre maximal de messages différents simultanément
+     */
+    public PooledProdConsBuffer(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity <= 0");
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++)
+            slots[i] = new Slot(lock.newCondition());
+    }
+
+    @Override
+    public void setProducersCount(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n < 0");
+        lock.lock();
+        try {
+            this.producersRemaining = n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void producerDone() {
+        lock.lock();
+        try {
+            if (producersRemaining > 0) {
+                producersRemaining--;
+                if (producersRemaining == 0) {
+                    closed = true;
+                    notEmpty.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void put(Message m, int n) throws InterruptedException {
+        if (n <= 0)
+            throw new IllegalArgumentException("n <= 0");
+        lock.lock();
+        try {
+            while (count == slots.length)
+                notFull.await();
+            deposit(m, n);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean tryPut(Message m, int n) throws InterruptedException {
+        if (n <= 0)
+            throw new IllegalArgumentException("n <= 0");
+        lock.lock();
+        try {
+            if (count == slots.length)
+                return false;
+            deposit(m, n);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Message m, int n, long timeout, TimeUnit unit) throws InterruptedException {
+        if (n <= 0)
+            throw new IllegalArgumentException("n <= 0");
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == slots.length) {
+                if (nanos <= 0)
+                    return false;
+                nanos = notFull.awaitNanos(nanos);
+            }
+            deposit(m, n);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message get() throws InterruptedException {
+        lock.lock();
+        try {
+            while (count == 0 && !closed)
+                notEmpty.await();
+            if (count == 0)
+                return null;
+            return takeCopy();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message tryGet() throws InterruptedException {
+        lock.lock();
+        try {
+            if (count == 0)
+                return null;
+            return takeCopy();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0 && !closed) {
+                if (nanos <= 0)
+                    return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            if (count == 0)
+                return null;
+            return takeCopy();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Dépose m dans le slot de la case "in" (verrou tenu, au moins un slot
+     * libre), puis attend que ses n exemplaires aient été consommés.
+     */
+    private void deposit(Message m, int n) throws InterruptedException {
+        Slot slot = slots[in];
+        slot.msg = m;
+        slot.copies = n;
+        slot.taken = 0;
+        long gen = slot.generation;
+        in = (in + 1) % slots.length;
+        count++;
+        totalProduced += n;
+
+        // Un consommateur par exemplaire au plus.
+        for (int i = 0; i < n; i++)
+            notEmpty.signal();
+
+        awaitRelease(slot, gen);
+    }
+
+    /**
+     * Prend un exemplaire du slot de tête (verrou tenu, au moins un slot
+     * présent), puis attend que tous ses exemplaires aient été consommés.
+     */
+    private Message takeCopy() throws InterruptedException {
+        Slot slot = slots[out];
+        Message m = slot.msg;
+        long gen = slot.generation;
+        if (++slot.taken == slot.copies) {
+            release(slot);
+            out = (out + 1) % slots.length;
+            count--;
+            notFull.signal();
+        } else {
+            awaitRelease(slot, gen);
+        }
+        return m;
+    }
+
+    /**
+     * Dernier exemplaire pris : le slot passe à la génération suivante
+     * (verrou tenu) et ses seuls attendants sont réveillés.
+     */
+    private void release(Slot slot) {
+        slot.msg = null;
+        slot.generation++;
+        if (slot.waiters > 0)
+            slot.allConsumed.signalAll();
+    }
+
+    /**
+     * Attend (verrou tenu) que le slot ait quitté la génération gen.
+     */
+    private void awaitRelease(Slot slot, long gen) throws InterruptedException {
+        slot.waiters++;
+        try {
+            while (slot.generation == gen)
+                slot.allConsumed.await();
+        } finally {
+            slot.waiters--;
+        }
+    }
+
+    @Override
+    public int nmsg() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int totmsg() {
+        lock.lock();
+        try {
+            return totalProduced;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
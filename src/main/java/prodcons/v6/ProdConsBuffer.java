@@ -1,5 +1,6 @@
 package prodcons.v6;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -24,6 +25,19 @@ import java.util.concurrent.locks.ReentrantLock;
  * ReentrantLock équitable, avec deux conditions globales :
  * - notFull : le buffer n'est pas plein (au moins un slot libre),
  * - notEmpty: le buffer n'est pas vide (au moins un slot présent).
+ *
+ * Les variantes tryPut / offer et tryGet / poll ne limitent que l'attente
+ * d'un slot libre (ou d'un message) ; la barrière "tous les exemplaires
+ * consommés" reste celle de put / get.
+ *
+ * Pas de blocage en tête de file : le slot de tête est retiré dès que son
+ * dernier exemplaire est pris (et non consommé), si bien que le
+ * consommateur suivant prend déjà un exemplaire du slot suivant. Seuls
+ * les détenteurs d'exemplaires du slot de tête (au plus n - 1) attendent.
+ * Prendre un exemplaire d'un slot plus récent alors que celui de tête en
+ * a encore serait dangereux : les consommateurs pourraient tous détenir
+ * des exemplaires de messages différents sans qu'aucun message n'ait ses
+ * n exemplaires pris, et aucune barrière ne serait plus franchie.
  */
 public class ProdConsBuffer implements IProdConsBuffer {
 
@@ -170,29 +184,44 @@ public class ProdConsBuffer implements IProdConsBuffer {
             while (count == buf.length) {
                 notFull.await();
             }
+            deposit(m, n);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            // Créer le slot logique pour ce message multi-exemplaires
-            // avec une condition dédiée à ce message.
-            Slot slot = new Slot(m, n, lock.newCondition());
+    @Override
+    public boolean tryPut(Message m, int n) throws InterruptedException {
+        if (n <= 0)
+            throw new IllegalArgumentException("n <= 0");
 
-            // Insérer le slot dans le buffer
-            buf[in] = slot;
-            in = (in + 1) % buf.length;
-            count++;
-            totalProduced += n;
+        lock.lock();
+        try {
+            if (count == buf.length)
+                return false;
+            deposit(m, n);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            // Réveiller les consommateurs : un nouveau slot est disponible
-            notEmpty.signalAll();
+    @Override
+    public boolean offer(Message m, int n, long timeout, TimeUnit unit) throws InterruptedException {
+        if (n <= 0)
+            throw new IllegalArgumentException("n <= 0");
+        long nanos = unit.toNanos(timeout);
 
-            // Barrière producteur :
-            // tant que tous les exemplaires n'ont pas été consommés,
-            // le producteur reste bloqué sur la condition du slot.
-            while (slot.taken < slot.copies) {
-                slot.allConsumed.await();
+        lock.lockInterruptibly();
+        try {
+            // Seule l'attente d'un slot libre est bornée
+            while (count == buf.length) {
+                if (nanos <= 0)
+                    return false;
+                nanos = notFull.awaitNanos(nanos);
             }
-
-            // Quand on sort de cette boucle, tous les exemplaires ont été consommés
-            // et le slot a été retiré du buffer par le dernier consommateur.
+            deposit(m, n);
+            return true;
         } finally {
             lock.unlock();
         }
@@ -214,44 +243,112 @@ public class ProdConsBuffer implements IProdConsBuffer {
                 return null;
             }
 
-            // On regarde le slot en tête de file (mais on ne l'enlève pas encore).
-            Slot slot = buf[out];
-
-            // Ce consommateur prend un exemplaire de ce message.
-            slot.taken++;
-            boolean last = (slot.taken == slot.copies);
-
-            if (last) {
-                // Ce consommateur est le dernier à prendre un exemplaire :
-                // - on enlève le slot du buffer,
-                // - on libère un slot pour les producteurs,
-                // - on réveille tous ceux qui attendent la fin de consommation
-                // de ce message (producteur + autres consommateurs).
-                buf[out] = null;
-                out = (out + 1) % buf.length;
-                count--;
-
-                notFull.signal(); // buffer moins plein
-                slot.allConsumed.signalAll(); // réveiller producteur + autres consommateurs
-            } else {
-                // Ce n'est pas le dernier consommateur :
-                // il doit attendre que tous les exemplaires soient consommés.
-                while (slot.taken < slot.copies) {
-                    slot.allConsumed.await();
-                }
-                // Quand il se réveille, le dernier consommateur a déjà fait
-                // le nettoyage du slot et libéré les ressources.
-            }
+            return takeCopy();
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            // Tous les exemplaires de ce message ont été consommés :
-            // ce consommateur peut poursuivre avec le message qu'il a récupéré.
-            return slot.msg;
+    @Override
+    public Message tryGet() throws InterruptedException {
+        lock.lock();
+        try {
+            if (count == 0)
+                return null;
+            return takeCopy();
+        } finally {
+            lock.unlock();
+        }
+    }
 
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+
+        lock.lockInterruptibly();
+        try {
+            // Seule l'attente d'un slot est bornée
+            while (count == 0 && !closed) {
+                if (nanos <= 0)
+                    return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            if (count == 0)
+                return null;
+            return takeCopy();
         } finally {
             lock.unlock();
         }
     }
 
+    /**
+     * Dépose le slot de m (verrou tenu, au moins un slot libre), puis attend
+     * que ses n exemplaires aient été consommés.
+     */
+    private void deposit(Message m, int n) throws InterruptedException {
+        // Créer le slot logique pour ce message multi-exemplaires
+        // avec une condition dédiée à ce message.
+        Slot slot = new Slot(m, n, lock.newCondition());
+
+        // Insérer le slot dans le buffer
+        buf[in] = slot;
+        in = (in + 1) % buf.length;
+        count++;
+        totalProduced += n;
+
+        // Réveiller les consommateurs : un nouveau slot est disponible
+        notEmpty.signalAll();
+
+        // Barrière producteur :
+        // tant que tous les exemplaires n'ont pas été consommés,
+        // le producteur reste bloqué sur la condition du slot.
+        while (slot.taken < slot.copies) {
+            slot.allConsumed.await();
+        }
+
+        // Quand on sort de cette boucle, tous les exemplaires ont été consommés
+        // et le slot a été retiré du buffer par le dernier consommateur.
+    }
+
+    /**
+     * Prend un exemplaire du slot de tête (verrou tenu, au moins un slot
+     * présent), puis attend que tous ses exemplaires aient été consommés.
+     */
+    private Message takeCopy() throws InterruptedException {
+        // On regarde le slot en tête de file (mais on ne l'enlève pas encore).
+        Slot slot = buf[out];
+
+        // Ce consommateur prend un exemplaire de ce message.
+        slot.taken++;
+        boolean last = (slot.taken == slot.copies);
+
+        if (last) {
+            // Ce consommateur est le dernier à prendre un exemplaire :
+            // - on enlève le slot du buffer,
+            // - on libère un slot pour les producteurs,
+            // - on réveille tous ceux qui attendent la fin de consommation
+            // de ce message (producteur + autres consommateurs).
+            buf[out] = null;
+            out = (out + 1) % buf.length;
+            count--;
+
+            notFull.signal(); // buffer moins plein
+            slot.allConsumed.signalAll(); // réveiller producteur + autres consommateurs
+        } else {
+            // Ce n'est pas le dernier consommateur :
+            // il doit attendre que tous les exemplaires soient consommés.
+            while (slot.taken < slot.copies) {
+                slot.allConsumed.await();
+            }
+            // Quand il se réveille, le dernier consommateur a déjà fait
+            // le nettoyage du slot et libéré les ressources.
+        }
+
+        // Tous les exemplaires de ce message ont été consommés :
+        // ce consommateur peut poursuivre avec le message qu'il a récupéré.
+        return slot.msg;
+    }
+
     @Override
     public int nmsg() {
         lock.lock();
@@ -0,0 +1,154 @@
+package prodcons.v6;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import prodcons.ThreadMode;
+
+/**
+ * Test du tampon de diffusion asynchrone (MulticastProdConsBuffer).
+ *
+ * Chacun des nCons consommateurs doit recevoir tous les messages, dans le
+ * même ordre : on inscrit les nCons curseurs avant de démarrer les
+ * producteurs, puis on vérifie à la fin que chaque consommateur a lu la
+ * même suite de TOTAL messages et que l'anneau est vide.
+ *
+ * Le consommateur i traite un message en i * consTime / nCons ms : le plus
+ * lent retient les producteurs, les autres avancent à leur rythme.
+ */
+public class TestMulticast {
+
+    public static void main(String[] args) throws Exception {
+        Properties props = new Properties();
+        try (InputStream in = TestMulticast.class.getResourceAsStream("/prodcons/options.xml")) {
+            if (in == null)
+                throw new IllegalStateException("prodcons/options.xml introuvable sur le classpath");
+            props.loadFromXML(in);
+        }
+
+        int nProd = Integer.parseInt(props.getProperty("nProd"));
+        int nCons = Integer.parseInt(props.getProperty("nCons"));
+        int bufSz = Integer.parseInt(props.getProperty("bufSz"));
+        int prodT = Integer.parseInt(props.getProperty("prodTime"));
+        int consT = Integer.parseInt(props.getProperty("consTime"));
+        int minProd = Integer.parseInt(props.getProperty("minProd"));
+        int maxProd = Integer.parseInt(props.getProperty("maxProd"));
+        ThreadMode threadMode = ThreadMode.fromName(props.getProperty("threadMode", "platform"));
+
+        int[] quotas = new int[nProd];
+        int total = 0;
+        for (int i = 0; i < nProd; i++) {
+            quotas[i] = ThreadLocalRandom.current().nextInt(minProd, maxProd + 1);
+            total += quotas[i];
+        }
+        final int TOTAL = total;
+
+        MulticastProdConsBuffer buffer = new MulticastProdConsBuffer(bufSz);
+        buffer.setProducersCount(nProd);
+        AtomicInteger gen = new AtomicInteger(0);
+
+        System.out.println("==================================================");
+        System.out.println("[TEST v6-multicast] Diffusion asynchrone (un curseur par consommateur)");
+        System.out.printf("  nProd = %d, nCons = %d, bufSz = %d%n", nProd, nCons, bufSz);
+        System.out.printf("  prodT = %d ms, consT = %d ms (max)%n", prodT, consT);
+        System.out.printf("  threads  = %s%n", threadMode);
+        System.out.printf("  TOTAL messages = %d (lus chacun %d fois)%n", TOTAL, nCons);
+        System.out.println("==================================================");
+
+        List<Thread> all = new ArrayList<>();
+        List<Thread> producers = new ArrayList<>();
+        List<Thread> consumers = new ArrayList<>();
+
+        for (int i = 0; i < nProd; i++) {
+            final int quota = quotas[i];
+            Thread t = new Thread(() -> {
+                long tid = Thread.currentThread().getId();
+                try {
+                    for (int j = 0; j < quota; j++) {
+                        Thread.sleep(prodT);
+                        buffer.put(new Message(gen.incrementAndGet(), tid));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    buffer.producerDone();
+                }
+            }, "P-" + (i + 1));
+            producers.add(t);
+            all.add(t);
+        }
+
+        // Curseurs inscrits avant tout dépôt : chacun verra tous les messages.
+        List<List<Integer>> received = new ArrayList<>();
+        for (int i = 0; i < nCons; i++) {
+            final MulticastProdConsBuffer.Cursor cursor = buffer.register();
+            final int delay = (i + 1) * consT / nCons;
+            final List<Integer> ids = new ArrayList<>();
+            received.add(ids);
+            Thread t = new Thread(() -> {
+                try {
+                    Message m;
+                    while ((m = cursor.get()) != null) {
+                        ids.add(m.id);
+                        Thread.sleep(delay);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    cursor.unregister();
+                }
+            }, "C-" + (i + 1));
+            consumers.add(t);
+            all.add(t);
+        }
+
+        Thread monitor = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(500);
+                    System.out.printf("[STAT v6-multicast] retenus=%d, totmsg=%d%n",
+                            buffer.nmsg(), buffer.totmsg());
+                }
+            } catch (InterruptedException ignored) {
+                // Fin normale du monitor lorsque l'appli se termine.
+            }
+        }, "Monitor");
+        monitor.setDaemon(true);
+        monitor.start();
+
+        long t0 = System.nanoTime();
+        Collections.shuffle(all, new Random());
+        Map<Thread, Thread> running = threadMode.startAll(all);
+        for (Thread t : all)
+            running.get(t).join();
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+
+        // Tous les consommateurs doivent avoir lu la même suite complète.
+        List<Integer> first = received.isEmpty() ? List.of() : received.get(0);
+        boolean okCount = true;
+        boolean okOrder = true;
+        for (List<Integer> ids : received) {
+            okCount &= ids.size() == TOTAL;
+            okOrder &= ids.equals(first);
+        }
+        boolean okEmpty = buffer.nmsg() == 0;
+
+        System.out.println("==================================================");
+        System.out.println("[TEST v6-multicast] Résumé final :");
+        System.out.printf("  totalProduced (buffer)         = %d%n", buffer.totmsg());
+        System.out.printf("  messages lus par consommateur  = %s%n", okCount ? "TOUS" : "INCOMPLET");
+        System.out.printf("  même ordre pour tous           = %s%n", okOrder ? "OUI" : "NON");
+        System.out.printf("  anneau entièrement libéré      = %s%n", okEmpty ? "OUI" : "NON");
+        System.out.printf("  durée                          = %d ms%n", ms);
+        System.out.printf("  Test global                    = %s%n",
+                (buffer.totmsg() == TOTAL && okCount && okOrder && okEmpty) ? "SUCCÈS" : "ÉCHEC");
+        System.out.println("==================================================");
+    }
+}
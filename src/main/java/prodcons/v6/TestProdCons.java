@@ -4,10 +4,13 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
+import prodcons.ThreadMode;
+
 /**
  * Test de la version v6 du problème producteur-consommateur.
  *
@@ -45,6 +48,8 @@ public class TestProdCons {
         int consT = Integer.parseInt(props.getProperty("consTime"));
         int minProd = Integer.parseInt(props.getProperty("minProd"));
         int maxProd = Integer.parseInt(props.getProperty("maxProd"));
+        // Exécution des participants (voir prodcons.ThreadMode)
+        ThreadMode threadMode = ThreadMode.fromName(props.getProperty("threadMode", "platform"));
         int nCopies = Integer.parseInt(props.getProperty("nCopies")); // nb d'exemplaires par message
 
         // Tirage des quotas (nombre de messages logiques) pour chaque producteur
@@ -59,7 +64,12 @@ public class TestProdCons {
         // Nombre total d'exemplaires attendus = somme(quota_i) * nCopies
         final int TOTAL_COPIES = totalMessages * nCopies;
 
-        IProdConsBuffer buffer = new ProdConsBuffer(bufSz);
+        // Implémentation du tampon : "pooled" = slots recyclés
+        // (PooledProdConsBuffer), sinon ProdConsBuffer.
+        String bufImpl = props.getProperty("bufImpl", "lock");
+        IProdConsBuffer buffer = bufImpl.equals("pooled")
+                ? new PooledProdConsBuffer(bufSz)
+                : new ProdConsBuffer(bufSz);
         buffer.setProducersCount(nProd);
 
         // Affichage de la configuration et des quotas
@@ -72,7 +82,9 @@ public class TestProdCons {
         System.out.printf("  consT    = %d ms%n", consT);
         System.out.printf("  minProd  = %d%n", minProd);
         System.out.printf("  maxProd  = %d%n", maxProd);
+        System.out.printf("  threads  = %s%n", threadMode);
         System.out.printf("  nCopies  = %d (exemplaires par message)%n", nCopies);
+        System.out.printf("  bufImpl  = %s%n", buffer.getClass().getSimpleName());
         System.out.printf("  total messages logiques attendus = %d%n", totalMessages);
         System.out.printf("  TOTAL exemplaires attendus        = %d%n", TOTAL_COPIES);
         System.out.println("  Quotas par producteur :");
@@ -116,9 +128,9 @@ public class TestProdCons {
 
         // Démarrage aléatoire de tous les threads
         Collections.shuffle(all, new Random());
-        for (Thread t : all) {
-            t.start();
-        }
+        // En mode virtuel, chaque participant s'exécute dans un thread
+        // virtuel : c'est ce thread que l'on rejoint.
+        Map<Thread, Thread> running = threadMode.startAll(all);
 
         // Attendre la fin de tous les producteurs.
         // Rappel : un producteur ne quitte pas la méthode put(m, nCopies)
@@ -127,7 +139,7 @@ public class TestProdCons {
         // - tous les messages (et tous leurs exemplaires) ont été consommés,
         // - le buffer ne devrait plus contenir aucun slot (ou très bientôt).
         for (Thread pth : producers) {
-            pth.join();
+            running.get(pth).join();
         }
 
         // On laisse un léger délai pour que les derniers consommateurs
@@ -137,7 +149,7 @@ public class TestProdCons {
         // Les consommateurs doivent s'arrêter automatiquement quand le
         // buffer est fermé et vide : on les rejoint donc directement.
         for (Thread c : consumers) {
-            c.join();
+            running.get(c).join();
         }
 
         int finalSlots = buffer.nmsg();
@@ -1,7 +1,11 @@
 package prodcons.v7;
 
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 
 /**
  * Tampon borné pour messages contenant des tâches.
@@ -9,27 +13,48 @@ import java.util.concurrent.locks.ReentrantLock;
  * Implémentation classique producteur-consommateur :
  * - buffer circulaire
  * - ReentrantLock équitable
- * - conditions notFull / notEmpty
+ * - condition notFull pour les producteurs
+ * - attentes via une WaitStrategy (blocage immédiat par défaut)
+ * - variantes sans attente (tryPut / tryGet) et à délai (offer / poll)
+ * - transfert direct : un consommateur qui trouve le buffer vide s'inscrit
+ * dans waiters et s'endort hors verrou ; le producteur suivant lui remet
+ * le message sans passer par le buffer circulaire (message null refusé :
+ * null y signifie "pas encore servi")
  */
 public class ProdConsBuffer implements IProdConsBuffer {
 
     private final Message[] buf;
     private int in = 0;
     private int out = 0;
-    private int count = 0;
+    private volatile int count = 0; // relu sans verrou par la WaitStrategy
     private int totalProduced = 0;
 
     private int producersRemaining = 0;
-    private boolean closed = false;
+    private volatile boolean closed = false;
 
     private final ReentrantLock lock = new ReentrantLock(true);
     private final Condition notFull = lock.newCondition();
-    private final Condition notEmpty = lock.newCondition();
+
+    // Consommateurs endormis, FIFO ; non vide implique count == 0.
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+
+    private final WaitStrategy waitStrategy;
+    private final BooleanSupplier hasRoom;
+    private final BooleanSupplier hasMessageOrClosed;
 
     public ProdConsBuffer(int capacity) {
+        this(capacity, WaitStrategy.blocking());
+    }
+
+    public ProdConsBuffer(int capacity, WaitStrategy waitStrategy) {
         if (capacity <= 0)
             throw new IllegalArgumentException("capacity <= 0");
+        if (waitStrategy == null)
+            throw new NullPointerException("waitStrategy == null");
         this.buf = new Message[capacity];
+        this.waitStrategy = waitStrategy;
+        this.hasRoom = () -> count < buf.length;
+        this.hasMessageOrClosed = () -> count > 0 || closed;
     }
 
     
@@ -51,7 +76,9 @@ public class ProdConsBuffer implements IProdConsBuffer {
                 producersRemaining--;
                 if (producersRemaining == 0) {
                     closed = true;
-                    notEmpty.signalAll();
+                    Waiter w;
+                    while ((w = waiters.poll()) != null)
+                        LockSupport.unpark(w.thread);
                 }
             }
         } finally {
@@ -71,42 +98,182 @@ public class ProdConsBuffer implements IProdConsBuffer {
 
     @Override
     public void put(Message m) throws InterruptedException {
+        if (m == null)
+            throw new NullPointerException("m == null");
+        Waiter w;
         lock.lock();
         try {
             while (count == buf.length) {
-                notFull.await();
+                waitStrategy.await(lock, notFull, hasRoom);
             }
-            buf[in] = m;
-            in = (in + 1) % buf.length;
-            count++;
-            totalProduced++;
-            notEmpty.signal();
+            w = deliver(m);
         } finally {
             lock.unlock();
         }
+        if (w != null)
+            LockSupport.unpark(w.thread);
     }
 
     @Override
     public Message get() throws InterruptedException {
+        if (!hasMessageOrClosed.getAsBoolean())
+            waitStrategy.spin(hasMessageOrClosed);
+        return awaitHandOff(false, 0L);
+    }
+
+    @Override
+    public boolean tryPut(Message m) {
+        if (m == null)
+            throw new NullPointerException("m == null");
+        Waiter w;
         lock.lock();
         try {
-            while (count == 0 && !closed) {
-                notEmpty.await();
+            if (count == buf.length)
+                return false;
+            w = deliver(m);
+        } finally {
+            lock.unlock();
+        }
+        if (w != null)
+            LockSupport.unpark(w.thread);
+        return true;
+    }
+
+    @Override
+    public boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        if (m == null)
+            throw new NullPointerException("m == null");
+        Waiter w;
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == buf.length) {
+                if (nanos <= 0)
+                    return false;
+                nanos = notFull.awaitNanos(nanos);
             }
+            w = deliver(m);
+        } finally {
+            lock.unlock();
+        }
+        if (w != null)
+            LockSupport.unpark(w.thread);
+        return true;
+    }
 
-            if (count == 0 && closed) {
+    @Override
+    public Message tryGet() {
+        lock.lock();
+        try {
+            if (count == 0)
                 return null;
-            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        return awaitHandOff(true, unit.toNanos(timeout));
+    }
 
-            Message m = buf[out];
-            buf[out] = null;
-            out = (out + 1) % buf.length;
-            count--;
-            notFull.signal();
-            return m;
+    /**
+     * Retrait commun à get et poll : depuis le buffer s'il n'est pas vide,
+     * sinon attente (hors verrou) d'un transfert direct, de la fermeture ou
+     * du délai.
+     */
+    private Message awaitHandOff(boolean timed, long nanos) throws InterruptedException {
+        final Waiter w;
+        lock.lock();
+        try {
+            if (count > 0)
+                return dequeue();
+            if (closed || (timed && nanos <= 0))
+                return null;
+            w = new Waiter(Thread.currentThread());
+            waiters.add(w);
         } finally {
             lock.unlock();
         }
+
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        boolean interrupted = false;
+        while (w.item == null && !closed) {
+            if (Thread.interrupted()) {
+                interrupted = true;
+                break;
+            }
+            if (!timed) {
+                LockSupport.park(this);
+            } else {
+                nanos = deadline - System.nanoTime();
+                if (nanos <= 0)
+                    break;
+                LockSupport.parkNanos(this, nanos);
+            }
+        }
+
+        Message m = w.item;
+        if (m == null) {
+            // Abandon : se retirer de la file, sauf si servi entre-temps.
+            lock.lock();
+            try {
+                m = w.item;
+                if (m == null)
+                    waiters.remove(w);
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (interrupted) {
+            if (m == null)
+                throw new InterruptedException();
+            Thread.currentThread().interrupt();
+        }
+        return m;
+    }
+
+    /**
+     * Remet m au premier consommateur endormi, sinon l'insère dans le
+     * buffer (verrou tenu). Renvoie le consommateur à réveiller hors verrou.
+     */
+    private Waiter deliver(Message m) {
+        Waiter w = waiters.poll();
+        if (w == null) {
+            enqueue(m);
+            return null;
+        }
+        w.item = m;
+        totalProduced++;
+        return w;
+    }
+
+    private void enqueue(Message m) {
+        buf[in] = m;
+        in = (in + 1) % buf.length;
+        count++;
+        totalProduced++;
+    }
+
+    private Message dequeue() {
+        Message m = buf[out];
+        buf[out] = null;
+        out = (out + 1) % buf.length;
+        count--;
+        notFull.signal();
+        return m;
+    }
+
+    private static final class Waiter {
+        final Thread thread;
+        volatile Message item; // écrit sous verrou par le producteur
+
+        Waiter(Thread thread) {
+            this.thread = thread;
+        }
     }
 
     @Override
@@ -4,10 +4,13 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
+import prodcons.ThreadMode;
+
 /**
  * Test de la version "tâches" :
  * - les producteurs génèrent des messages contenant des Runnable,
@@ -30,6 +33,11 @@ public class TestProdCons {
         int consT = Integer.parseInt(props.getProperty("consTime"));
         int minProd = Integer.parseInt(props.getProperty("minProd"));
         int maxProd = Integer.parseInt(props.getProperty("maxProd"));
+        // Exécution des participants (voir prodcons.ThreadMode)
+        ThreadMode threadMode = ThreadMode.fromName(props.getProperty("threadMode", "platform"));
+        WaitStrategy ws = WaitStrategy.fromName(props.getProperty("waitStrategy", "block"),
+                Integer.parseInt(props.getProperty("spinBudget",
+                        String.valueOf(WaitStrategy.DEFAULT_SPIN_BUDGET))));
 
         int[] quotas = new int[nProd];
         int totalMessages = 0;
@@ -46,6 +54,8 @@ public class TestProdCons {
         System.out.printf("  bufSz   = %d%n", bufSz);
         System.out.printf("  prodT   = %d ms%n", prodT);
         System.out.printf("  consT   = %d ms%n", consT);
+        System.out.printf("  wait    = %s%n", ws);
+        System.out.printf("  threads = %s%n", threadMode);
         System.out.printf("  total messages attendus = %d%n", totalMessages);
         System.out.println("  Quotas par producteur :");
         for (int i = 0; i < nProd; i++) {
@@ -53,7 +63,7 @@ public class TestProdCons {
         }
         System.out.println("==================================================");
 
-        ProdConsBuffer buffer = new ProdConsBuffer(bufSz);
+        ProdConsBuffer buffer = new ProdConsBuffer(bufSz, ws);
         buffer.setProducersCount(nProd);
 
         List<Thread> all = new ArrayList<>();
@@ -74,13 +84,13 @@ public class TestProdCons {
 
         // démarrage aléatoire des threads pour forcer la concurrence
         Collections.shuffle(all, new Random());
-        for (Thread t : all) {
-            t.start();
-        }
+        // En mode virtuel, chaque participant s'exécute dans un thread
+        // virtuel : c'est ce thread que l'on rejoint.
+        Map<Thread, Thread> running = threadMode.startAll(all);
 
         // attendre la fin de tous les producteurs (ils ont un quota connu)
         for (Thread p : producers) {
-            p.join();
+            running.get(p).join();
         }
 
         // laisser un petit délai aux consommateurs pour vider le tampon
@@ -89,7 +99,7 @@ public class TestProdCons {
         // Les consommateurs se terminent automatiquement quand le buffer
         // est fermé et vide : on les rejoint sans les interrompre.
         for (Thread c : consumers) {
-            c.join();
+            running.get(c).join();
         }
 
         System.out.println("==================================================");
@@ -4,13 +4,19 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
+import prodcons.ThreadMode;
+
 /**
  * Test pour TaskExecutor : les producteurs déposent des tâches (un Runnable
  * par message) et le TaskExecutor gère automatiquement les workers.
+ *
+ * Le mode threadMode s'applique aux producteurs ; les workers sont créés
+ * par le TaskExecutor lui-même.
  */
 public class TestTaskExecutor {
 
@@ -29,6 +35,8 @@ public class TestTaskExecutor {
         int minProd = Integer.parseInt(props.getProperty("minProd"));
         int maxProd = Integer.parseInt(props.getProperty("maxProd"));
         int maxWorkers = Integer.parseInt(props.getProperty("nCons"));
+        // Exécution des producteurs (voir prodcons.ThreadMode)
+        ThreadMode threadMode = ThreadMode.fromName(props.getProperty("threadMode", "platform"));
 
         int[] quotas = new int[nProd];
         int totalMessages = 0;
@@ -47,6 +55,7 @@ public class TestTaskExecutor {
         System.out.printf("  prodT   = %d ms%n", prodT);
         System.out.printf("  consT   = %d ms%n", consT);
         System.out.printf("  maxWorkers = %d%n", maxWorkers);
+        System.out.printf("  threads = %s%n", threadMode);
         System.out.printf("  total tasks (approx) = %d%n", totalMessages);
         System.out.println("==================================================");
 
@@ -88,12 +97,11 @@ public class TestTaskExecutor {
 
         // démarrage aléatoire
         Collections.shuffle(producers, new Random());
-        for (Thread p : producers)
-            p.start();
+        Map<Thread, Thread> running = threadMode.startAll(producers);
 
         // attendre la fin des producteurs
         for (Thread p : producers)
-            p.join();
+            running.get(p).join();
 
         // attendre que les workers traitent les tâches et s'arrêtent s'ils deviennent
         // inactifs
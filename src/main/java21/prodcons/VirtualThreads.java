@@ -0,0 +1,19 @@
+package prodcons;
+
+/**
+ * Accès aux threads virtuels, version JDK 21 (META-INF/versions/21 du jar
+ * multi-version).
+ */
+final class VirtualThreads {
+
+    static boolean available() {
+        return true;
+    }
+
+    static Thread unstarted(String name, Runnable task) {
+        return Thread.ofVirtual().name(name).unstarted(task);
+    }
+
+    private VirtualThreads() {
+    }
+}